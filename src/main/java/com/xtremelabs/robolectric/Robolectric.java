@@ -63,12 +63,13 @@ import android.webkit.*;
 import android.widget.*;
 import com.xtremelabs.robolectric.bytecode.DirectCallPolicy.FullStackDirectCallPolicy;
 import com.xtremelabs.robolectric.bytecode.RobolectricInternals;
-import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
 import com.xtremelabs.robolectric.shadows.*;
 import com.xtremelabs.robolectric.tester.org.apache.http.FakeHttpLayer;
 import com.xtremelabs.robolectric.tester.org.apache.http.HttpRequestInfo;
 import com.xtremelabs.robolectric.tester.org.apache.http.RequestMatcher;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 import com.xtremelabs.robolectric.util.Scheduler;
+import com.xtremelabs.robolectric.util.VirtualClock;
 import org.apache.http.Header;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -78,9 +79,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class Robolectric {
     public static Application application;
+    private static Map<String, String> defaultShadowClassNames;
     public static final int DEFAULT_SDK_VERSION = 16;
 
     public static <T> T newInstanceOf(Class<T> clazz) {
@@ -107,7 +110,11 @@ public class Robolectric {
     }
 
     public static void bindDefaultShadowClasses() {
-        bindShadowClasses(getDefaultShadowClasses());
+        // resolved once per class loader, then re-bound wholesale before each test
+        if (defaultShadowClassNames == null) {
+            defaultShadowClassNames = RobolectricInternals.getShadowClassNames(getDefaultShadowClasses());
+        }
+        RobolectricInternals.getShadowWrangler().bindShadowClasses(defaultShadowClassNames);
     }
 
     public static void bindShadowClasses(List<Class<?>> shadowClasses) {
@@ -123,7 +130,7 @@ public class Robolectric {
      * output for the current test only.
      */
     public static void logMissingInvokedShadowMethods() {
-        ShadowWrangler.getInstance().logMissingInvokedShadowMethods();
+        RobolectricInternals.getShadowWrangler().logMissingInvokedShadowMethods();
     }
 
     public static List<Class<?>> getDefaultShadowClasses() {
@@ -348,6 +355,7 @@ public class Robolectric {
                 ShadowStateListDrawable.class,
                 ShadowStatFs.class,
                 ShadowSurfaceView.class,
+                ShadowSystemClock.class,
                 ShadowTabActivity.class,
                 ShadowTabHost.class,
                 ShadowTabSpec.class,
@@ -387,7 +395,8 @@ public class Robolectric {
     }
 
     public static void resetStaticState() {
-        ShadowWrangler.getInstance().silence();
+        RobolectricInternals.getShadowWrangler().silence();
+        ShadowSystemClock.reset();
         Robolectric.application = new Application();
         ShadowBitmapFactory.reset();
         ShadowDrawable.reset();
@@ -1136,16 +1145,21 @@ public class Robolectric {
 
     @SuppressWarnings({"unchecked"})
     public static <P, R> P shadowOf_(R instance) {
-        return (P) ShadowWrangler.getInstance().shadowOf(instance);
+        return (P) RobolectricInternals.getShadowWrangler().shadowOf(instance);
     }
 
     /**
-     * Runs any background tasks previously queued by {@link android.os.AsyncTask#execute(Object[])}.
+     * Runs any background tasks previously queued by {@link android.os.AsyncTask#execute(Object[])}. If background
+     * work is running on real threads, waits for it all to finish instead.
      * <p/>
      * <p/>
      * Note: calling this method does not pause or un-pause the scheduler.
      */
     public static void runBackgroundTasks() {
+        BackgroundThreadPool backgroundThreadPool = getShadowApplication().getBackgroundThreadPool();
+        if (backgroundThreadPool != null) {
+            backgroundThreadPool.waitUntilIdle();
+        }
         getBackgroundScheduler().advanceBy(0);
     }
 
@@ -1347,6 +1361,14 @@ public class Robolectric {
         return getShadowApplication().getBackgroundScheduler();
     }
 
+    /**
+     * Returns the clock shared by the UI thread and background schedulers, {@code SystemClock}, alarms and timers.
+     * Advancing it runs everything that falls due on any of them, in order.
+     */
+    public static VirtualClock getVirtualClock() {
+        return ShadowSystemClock.getVirtualClock();
+    }
+
     public static ShadowApplication getShadowApplication() {
         return shadowOf(Robolectric.application);
     }
@@ -7,17 +7,21 @@ import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
 import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
 import com.xtremelabs.robolectric.internal.RealObject;
 import com.xtremelabs.robolectric.internal.RobolectricTestRunnerInterface;
+import com.xtremelabs.robolectric.res.DocumentCache;
 import com.xtremelabs.robolectric.res.ResourceLoader;
 import com.xtremelabs.robolectric.shadows.ShadowApplication;
 import com.xtremelabs.robolectric.shadows.ShadowLog;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 import com.xtremelabs.robolectric.util.DatabaseConfig;
 import com.xtremelabs.robolectric.util.DatabaseConfig.DatabaseMap;
 import com.xtremelabs.robolectric.util.DatabaseConfig.UsingDatabaseMap;
 import com.xtremelabs.robolectric.util.SQLiteMap;
 import javassist.Loader;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -33,7 +37,10 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -41,11 +48,22 @@ import java.util.Map;
  * provide a simulation of the Android runtime environment.
  */
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements RobolectricTestRunnerInterface {
+    /**
+     * Set this system property to a number greater than one to spread test classes over that many isolated worlds, so
+     * they can be run concurrently (e.g. with JUnit's {@code ParallelComputer}). Each world has its own
+     * {@link RobolectricClassLoader} and {@link ShadowWrangler}, and so its own copy of every static in Robolectric and
+     * in the code under test. Test classes that end up in the same world take turns.
+     */
+    public static final String WORLDS_PROPERTY = "robolectric.worlds";
 
     /** Instrument detector. We use it to check whether the current instance is instrumented. */
   	private static InstrumentDetector instrumentDetector = InstrumentDetector.DEFAULT;
 
     private static RobolectricClassLoader defaultLoader;
+    private static final Map<RobolectricClassLoader, Object> worldLocks = new IdentityHashMap<RobolectricClassLoader, Object>();
+    private static final List<RobolectricClassLoader> worldLoaders = new ArrayList<RobolectricClassLoader>();
+    private static final List<String> worldCustomClassNames = new ArrayList<String>();
+    private static int nextWorld;
     private static Map<RobolectricConfig, ResourceLoader> resourceLoaderForRootAndDirectory = new HashMap<RobolectricConfig, ResourceLoader>();
 
     // fields in the RobolectricTestRunner in the original ClassLoader
@@ -57,13 +75,42 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
 	// fields in the RobolectricTestRunner in the instrumented ClassLoader
     protected RobolectricConfig robolectricConfig;
 
-    private static RobolectricClassLoader getDefaultLoader() {
+    private static synchronized RobolectricClassLoader getDefaultLoader() {
+        int worldCount = Integer.getInteger(WORLDS_PROPERTY, 1);
+        if (defaultLoader == null && worldCount > 1) {
+            return getNextWorldLoader(worldCount);
+        }
+
         if (defaultLoader == null) {
             defaultLoader = new RobolectricClassLoader(ShadowWrangler.getInstance());
         }
         return defaultLoader;
     }
 
+    /* package */ static synchronized RobolectricClassLoader getNextWorldLoader(int worldCount) {
+        if (worldLoaders.size() < worldCount) {
+            RobolectricClassLoader worldLoader = new RobolectricClassLoader(ShadowWrangler.newInstance(), worldCustomClassNames);
+            worldLoaders.add(worldLoader);
+            worldLocks.put(worldLoader, new Object());
+            return worldLoader;
+        }
+        return worldLoaders.get(nextWorld++ % worldLoaders.size());
+    }
+
+    /* package */ static synchronized Object getWorldLock(RobolectricClassLoader classLoader) {
+        return worldLocks.get(classLoader);
+    }
+
+    /**
+     * Forgets the worlds made so far, so tests of them don't leak into the rest of the run.
+     */
+    /* package */ static synchronized void forgetWorlds() {
+        worldLoaders.clear();
+        worldLocks.clear();
+        worldCustomClassNames.clear();
+        nextWorld = 0;
+    }
+
     public static void setInstrumentDetector(final InstrumentDetector detector) {
       instrumentDetector = detector;
     }
@@ -82,9 +129,16 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
      *
      * @param classOrPackageToBeInstrumented fully-qualified class or package name
      */
-    protected static void addClassOrPackageToInstrument(String classOrPackageToBeInstrumented) {
+    protected static synchronized void addClassOrPackageToInstrument(String classOrPackageToBeInstrumented) {
         if (!isInstrumented()) {
-            defaultLoader.addCustomShadowClass(classOrPackageToBeInstrumented);
+            if (worldLoaders.isEmpty()) {
+                defaultLoader.addCustomShadowClass(classOrPackageToBeInstrumented);
+            } else {
+                worldCustomClassNames.add(classOrPackageToBeInstrumented);
+                for (RobolectricClassLoader worldLoader : worldLoaders) {
+                    worldLoader.addCustomShadowClass(classOrPackageToBeInstrumented);
+                }
+            }
         }
     }
 
@@ -110,7 +164,6 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     protected RobolectricTestRunner(final Class<?> testClass, final RobolectricConfig robolectricConfig)
             throws InitializationError {
         this(testClass,
-                isInstrumented() ? null : ShadowWrangler.getInstance(),
                 isInstrumented() ? null : getDefaultLoader(),
                 robolectricConfig, new SQLiteMap());
     }
@@ -127,7 +180,6 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     protected RobolectricTestRunner(Class<?> testClass, RobolectricConfig robolectricConfig, DatabaseMap databaseMap)
             throws InitializationError {
         this(testClass,
-                isInstrumented() ? null : ShadowWrangler.getInstance(),
                 isInstrumented() ? null : getDefaultLoader(),
                 robolectricConfig, databaseMap);
     }
@@ -190,6 +242,10 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
         this(testClass, new RobolectricConfig(new File(androidManifestPath), new File(resourceDirectory)));
     }
 
+    private RobolectricTestRunner(Class<?> testClass, RobolectricClassLoader classLoader, RobolectricConfig robolectricConfig, DatabaseMap databaseMap) throws InitializationError {
+        this(testClass, classLoader == null ? null : classLoader.getClassHandler(), classLoader, robolectricConfig, databaseMap);
+    }
+
     protected RobolectricTestRunner(Class<?> testClass, ClassHandler classHandler, RobolectricClassLoader classLoader, RobolectricConfig robolectricConfig) throws InitializationError {
         this(testClass, classHandler, classLoader, robolectricConfig, new SQLiteMap());
     }
@@ -229,6 +285,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
             delegateLoadingOf(RobolectricConfig.class.getName());
             delegateLoadingOf(DatabaseMap.class.getName());
             delegateLoadingOf(android.R.class.getName());
+            delegateLoadingOf(DocumentCache.class.getName());
 
             Class<?> delegateClass = classLoader.bootstrap(this.getClass());
             try {
@@ -267,6 +324,32 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
         classLoader.delegateLoadingOf(className);
     }
 
+    @Override public void run(final RunNotifier notifier) {
+        Object worldLock = classLoader == null ? null : getWorldLock(classLoader);
+        if (worldLock == null) {
+            super.run(notifier);
+            return;
+        }
+
+        synchronized (worldLock) {
+            Thread thread = Thread.currentThread();
+            ClassLoader previousContextClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            try {
+                super.run(notifier);
+            } finally {
+                thread.setContextClassLoader(previousContextClassLoader);
+            }
+        }
+    }
+
+    @Override public void setScheduler(final RunnerScheduler scheduler) {
+        // test methods share their class's world, so they can't be run concurrently with each other
+        if (classLoader == null || getWorldLock(classLoader) == null) {
+            super.setScheduler(scheduler);
+        }
+    }
+
     @Override protected Statement methodBlock(final FrameworkMethod method) {
         setupI18nStrictState(method.getMethod(), robolectricConfig);
         lookForLocaleAnnotation( method.getMethod(), robolectricConfig );
@@ -314,7 +397,24 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     @Override public void internalAfterTest(final Method method) {
-        afterTest(method);
+        try {
+            afterTest(method);
+        } finally {
+            finishBackgroundWork();
+        }
+    }
+
+    /*
+     * Waits for any work the test left running on real background threads, so it can't carry on into the next test's
+     * state, and throws the first failure in it.
+     */
+    private void finishBackgroundWork() {
+        if (Robolectric.application != null) {
+            BackgroundThreadPool backgroundThreadPool = Robolectric.getShadowApplication().getBackgroundThreadPool();
+            if (backgroundThreadPool != null) {
+                backgroundThreadPool.waitUntilIdle();
+            }
+        }
     }
 
     @Override public void setRobolectricConfig(final RobolectricConfig robolectricConfig) {
@@ -0,0 +1,127 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Build-time tool which runs the same instrumentation {@link RobolectricClassLoader} would apply lazily over every
+ * matching class in a set of jars (typically android.jar and maps.jar), and writes the results to a single jar.
+ * Point the {@value PreinstrumentedJar#PREINSTRUMENTED_JAR_PROPERTY} system property at that jar and the class loader
+ * will define those classes straight from it.
+ * <p/>
+ * Usage: {@code AheadOfTimeInstrumenter <output jar> <input jar>...}
+ */
+public class AheadOfTimeInstrumenter {
+    private final ClassPool classPool;
+    private final AndroidTranslator androidTranslator;
+    private final Set<String> visitedClassNames = new HashSet<String>();
+    private final Map<String, String> rulesFingerprints = new HashMap<String, String>();
+    private int instrumentedCount;
+
+    public AheadOfTimeInstrumenter(List<File> inputJars) throws NotFoundException {
+        classPool = new ClassPool();
+        for (File inputJar : inputJars) {
+            classPool.appendClassPath(inputJar.getAbsolutePath());
+        }
+        classPool.appendClassPath(new LoaderClassPath(AheadOfTimeInstrumenter.class.getClassLoader()));
+        androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: " + AheadOfTimeInstrumenter.class.getName() + " <output jar> <input jar>...");
+            System.exit(1);
+        }
+
+        List<File> inputJars = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            inputJars.add(new File(args[i]));
+        }
+
+        AheadOfTimeInstrumenter instrumenter = new AheadOfTimeInstrumenter(inputJars);
+        int count = instrumenter.instrument(inputJars, new File(args[0]));
+        System.out.println("Instrumented " + count + " classes into " + args[0]);
+    }
+
+    /**
+     * @return the number of classes written to {@code outputJar}
+     */
+    public int instrument(List<File> inputJars, File outputJar) throws IOException {
+        File outputDir = outputJar.getAbsoluteFile().getParentFile();
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(outputJar), PreinstrumentedJar.manifest());
+        try {
+            for (File inputJar : inputJars) {
+                JarFile jarFile = new JarFile(inputJar);
+                try {
+                    Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String entryName = entries.nextElement().getName();
+                        if (entryName.endsWith(".class")) {
+                            String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+                            instrument(className, jarOutputStream);
+                        }
+                    }
+                } finally {
+                    jarFile.close();
+                }
+            }
+            PreinstrumentedJar.writeRulesFingerprints(jarOutputStream, rulesFingerprints);
+        } finally {
+            jarOutputStream.close();
+        }
+        return instrumentedCount;
+    }
+
+    private void instrument(String className, JarOutputStream jarOutputStream) throws IOException {
+        if (!visitedClassNames.add(className) || androidTranslator.classHasFromAndroidEquivalent(className)) {
+            return;
+        }
+
+        try {
+            CtClass ctClass = classPool.get(className);
+            if (!androidTranslator.shouldInstrument(ctClass)) {
+                return;
+            }
+
+            // superclasses first, so subclasses see the same (de-finalized) hierarchy they would at runtime
+            CtClass superclass = ctClass.getSuperclass();
+            if (superclass != null) {
+                instrument(superclass.getName(), jarOutputStream);
+            }
+
+            androidTranslator.instrument(ctClass);
+            byte[] classBytes = ctClass.toBytecode();
+
+            jarOutputStream.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+            jarOutputStream.write(classBytes);
+            jarOutputStream.closeEntry();
+            rulesFingerprints.put(className, androidTranslator.rulesFingerprintFor(classPool, className));
+            instrumentedCount++;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // leave it to be instrumented lazily at runtime
+            System.out.println("Warning: couldn't instrument " + className + " ahead of time: " + e);
+        }
+    }
+}
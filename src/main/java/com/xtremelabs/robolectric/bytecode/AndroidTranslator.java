@@ -4,25 +4,43 @@ import android.net.Uri;
 import com.xtremelabs.robolectric.internal.DoNotInstrument;
 import com.xtremelabs.robolectric.internal.Instrument;
 import javassist.*;
+import javassist.bytecode.ClassFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @SuppressWarnings({"UnusedDeclaration"})
 public class AndroidTranslator implements Translator {
     /**
      * IMPORTANT -- increment this number when the bytecode generated for modified classes changes
-     * so the cache file can be invalidated.
+     * so cached classes generated by older versions are re-translated.
      */
-    public static final int CACHE_VERSION = 21;
+    public static final int CACHE_VERSION = 23;
 
     private static final List<ClassHandler> CLASS_HANDLERS = new ArrayList<ClassHandler>();
+    // digests of original class files by URL, so that cache hits don't re-read and re-hash them
+    private static final ConcurrentMap<String, ClassFileDigest> CLASS_FILE_DIGESTS = new ConcurrentHashMap<String, ClassFileDigest>();
 
     private ClassHandler classHandler;
     private ClassCache classCache;
-    private final List<String> instrumentingList = new ArrayList<String>();
-    private final List<String> instrumentingExcludeList = new ArrayList<String>();
+    // read by CachePrewarmer's threads while the test thread may still be adding custom shadow classes
+    private final CopyOnWriteArrayList<String> instrumentingList = new CopyOnWriteArrayList<String>();
+    private final CopyOnWriteArrayList<String> instrumentingExcludeList = new CopyOnWriteArrayList<String>();
+    private final ThreadLocal<String[]> missedCacheKey = new ThreadLocal<String[]>();
 
     public AndroidTranslator(ClassHandler classHandler, ClassCache classCache) {
         this.classHandler = classHandler;
@@ -45,9 +63,7 @@ public class AndroidTranslator implements Translator {
     }
 
     public void addCustomShadowClass(String customShadowClassName) {
-        if (!instrumentingList.contains(customShadowClassName)) {
-            instrumentingList.add(customShadowClassName);
-        }
+        instrumentingList.addIfAbsent(customShadowClassName);
     }
 
     public static ClassHandler getClassHandler(int index) {
@@ -74,11 +90,19 @@ public class AndroidTranslator implements Translator {
                 "}");
     }
 
+    /**
+     * Hands over the cache key {@link RobolectricClassLoader} has just worked out for {@code className} and found
+     * nothing under, so that translating it on this thread doesn't work the key out again.
+     */
+    /* package */ void useCacheKeyForNextLoad(String className, String cacheKey) {
+        missedCacheKey.set(new String[] {className, cacheKey});
+    }
+
     @Override
     public void onLoad(ClassPool classPool, String className) throws NotFoundException, CannotCompileException {
-        if (classCache.isWriting()) {
-            throw new IllegalStateException("shouldn't be modifying bytecode after we've started writing cache! class=" + className);
-        }
+        String[] missed = missedCacheKey.get();
+        missedCacheKey.remove();
+        String cacheKey = missed != null && missed[0].equals(className) ? missed[1] : null;
 
         if (classHasFromAndroidEquivalent(className)) {
             replaceClassWithFromAndroidEquivalent(classPool, className);
@@ -92,23 +116,254 @@ public class AndroidTranslator implements Translator {
             throw new IgnorableClassNotFoundException(e);
         }
 
-        if (shouldInstrument(ctClass)) {
-            int modifiers = ctClass.getModifiers();
-            if (Modifier.isFinal(modifiers)) {
-                ctClass.setModifiers(modifiers & ~Modifier.FINAL);
+        // a frozen class was already instrumented here, as the superclass of a class loaded before it
+        if (shouldInstrument(ctClass) && !ctClass.isFrozen()) {
+            try {
+                instrumentSuperclassesOf(classPool, ctClass, classCache);
+
+                if (cacheKey == null) {
+                    cacheKey = cacheKeyFor(classPool, className);
+                }
+                instrument(ctClass);
+                classCache.addClass(className, cacheKey, ctClass.toBytecode());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
+        }
+    }
 
-            classHandler.instrument(ctClass);
+    /**
+     * Makes sure every superclass of {@code ctClass} that should be instrumented has been in {@code classPool}, so that
+     * {@code ctClass} gets the same bytecode whichever order the class loader is asked for the hierarchy in: a subclass
+     * only adds its own shadow field if none of its superclasses has one. Superclasses come from {@code classCache}
+     * when they're there, and are instrumented and added to it when they aren't. Either way they're left frozen.
+     *
+     * @return the number of superclasses added to {@code classCache}
+     */
+    /* package */ int instrumentSuperclassesOf(ClassPool classPool, CtClass ctClass, ClassCache classCache)
+            throws NotFoundException, CannotCompileException, IOException {
+        CtClass superclass = ctClass.getSuperclass();
+        if (superclass == null || superclass.isFrozen() || !shouldInstrument(superclass)) {
+            return 0;
+        }
 
-            MethodGenerator methodGenerator = new MethodGenerator(ctClass);
-            methodGenerator.fixConstructors();
-            methodGenerator.fixMethods();
+        int count = instrumentSuperclassesOf(classPool, superclass, classCache);
+        String className = superclass.getName();
+        String cacheKey = cacheKeyFor(classPool, className);
+        byte[] cachedBytes = classCache == null ? null : classCache.getClassBytesFor(className, cacheKey);
+        if (cachedBytes != null) {
+            classPool.makeClass(new ByteArrayInputStream(cachedBytes)).freeze();
+            return count;
+        }
 
-            try {
-                classCache.addClass(className, ctClass.toBytecode());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        instrument(superclass);
+        byte[] classBytes = superclass.toBytecode();
+        if (classCache != null) {
+            classCache.addClass(className, cacheKey, classBytes);
+            count++;
+        }
+        return count;
+    }
+
+    /* package */ void instrument(CtClass ctClass) throws NotFoundException, CannotCompileException {
+        int modifiers = ctClass.getModifiers();
+        if (Modifier.isFinal(modifiers)) {
+            ctClass.setModifiers(modifiers & ~Modifier.FINAL);
+        }
+
+        classHandler.instrument(ctClass);
+
+        MethodGenerator methodGenerator = new MethodGenerator(ctClass);
+        methodGenerator.fixConstructors();
+        methodGenerator.fixMethods();
+    }
+
+    /**
+     * Returns a digest of everything the instrumented bytecode for {@code className} is derived from: the original
+     * bytes of the class and its superclasses, the instrumentation rules that match each of them, and
+     * {@link #CACHE_VERSION}. Rules that don't match any of those classes leave the key alone, so adding a custom
+     * shadow class doesn't throw away every cached class. Returns null if the original class can't be found.
+     * <p/>
+     * The original class bytes are only read and hashed the first time in each JVM, or again if the file or jar they
+     * come from has been modified since.
+     */
+    /* package */ String cacheKeyFor(ClassPool classPool, String className) {
+        if (classPool.find(className) == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(String.valueOf(CACHE_VERSION).getBytes("UTF-8"));
+
+            // a superclass decides whether its subclasses get their own shadow field and generated methods
+            for (String name = className; name != null && !name.equals(Object.class.getName()); ) {
+                URL classFile = classPool.find(name);
+                if (classFile == null) {
+                    break;
+                }
+                ClassFileDigest classFileDigest = classFileDigestFor(classFile);
+                digest.update(classFileDigest.digest);
+                digest.update((name + ruleMatching(name)).getBytes("UTF-8"));
+                name = classFileDigest.superclassName;
+            }
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
             }
+            return key.toString();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns {@code className} and each of its superclasses, each followed by the {@link #ruleMatching(String) rule}
+     * that decides whether it's instrumented. Those rules are all the instrumenting lists contribute to the class's
+     * {@link #cacheKeyFor(ClassPool, String) cache key}, so a class instrumented under this fingerprint can be reused
+     * wherever {@link #matchesRulesFingerprint(String)} holds, without reading any class files to work out the key.
+     */
+    /* package */ String rulesFingerprintFor(ClassPool classPool, String className) {
+        StringBuilder fingerprint = new StringBuilder();
+        try {
+            for (String name = className; name != null && !name.equals(Object.class.getName()); ) {
+                URL classFile = classPool.find(name);
+                if (classFile == null) {
+                    break;
+                }
+                if (fingerprint.length() > 0) {
+                    fingerprint.append(' ');
+                }
+                fingerprint.append(name).append(ruleMatching(name));
+                name = classFileDigestFor(classFile).superclassName;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return whether the instrumenting lists still pick the same rule for every class in {@code fingerprint}, as
+     *         written by {@link #rulesFingerprintFor(ClassPool, String)}
+     */
+    /* package */ boolean matchesRulesFingerprint(String fingerprint) {
+        for (String entry : fingerprint.split(" ")) {
+            int ruleStart = 0;
+            while (ruleStart < entry.length() && entry.charAt(ruleStart) != '+' && entry.charAt(ruleStart) != '-') {
+                ruleStart++;
+            }
+            if (!ruleMatching(entry.substring(0, ruleStart)).equals(entry.substring(ruleStart))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the entry in the instrumenting lists that decides whether {@code className} is instrumented, prefixed
+     * with "-" for an exclusion or "+" for an inclusion, or an empty string if none does
+     */
+    /* package */ String ruleMatching(String className) {
+        for (String klassName : instrumentingExcludeList) {
+            if (className.startsWith(klassName)) {
+                return "-" + klassName;
+            }
+        }
+        for (String klassName : instrumentingList) {
+            if (className.startsWith(klassName)) {
+                return "+" + klassName;
+            }
+        }
+        return "";
+    }
+
+    private static ClassFileDigest classFileDigestFor(URL classFile) throws IOException, NoSuchAlgorithmException {
+        String url = classFile.toString();
+        File sourceFile = sourceFileOf(url);
+        if (sourceFile == null) {
+            return readClassFile(classFile, 0, 0);
+        }
+
+        // note the file's state before reading it, so a change while we read shows up as a mismatch next time
+        long lastModified = sourceFile.lastModified();
+        long length = sourceFile.length();
+        ClassFileDigest known = CLASS_FILE_DIGESTS.get(url);
+        if (known != null && known.lastModified == lastModified && known.length == length) {
+            return known;
+        }
+
+        ClassFileDigest classFileDigest = readClassFile(classFile, lastModified, length);
+        CLASS_FILE_DIGESTS.put(url, classFileDigest);
+        return classFileDigest;
+    }
+
+    /**
+     * @return the class file or jar on the local file system that {@code url} reads from, or null if it isn't one
+     */
+    private static File sourceFileOf(String url) {
+        String fileUrl = url;
+        if (url.startsWith("jar:")) {
+            int separator = url.indexOf("!/");
+            if (separator == -1) {
+                return null;
+            }
+            fileUrl = url.substring("jar:".length(), separator);
+        }
+        if (!fileUrl.startsWith("file:")) {
+            return null;
+        }
+
+        try {
+            return new File(new URI(fileUrl));
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ClassFileDigest readClassFile(URL classFile, long lastModified, long length) throws IOException, NoSuchAlgorithmException {
+        InputStream inputStream = classFile.openStream();
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+            bytes = outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+
+        String superclassName;
+        try {
+            superclassName = new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes))).getSuperclass();
+        } catch (IOException e) {
+            // not a class file we can read; its bytes are all there is to go on
+            superclassName = null;
+        }
+        return new ClassFileDigest(lastModified, length, MessageDigest.getInstance("SHA-1").digest(bytes), superclassName);
+    }
+
+    private static class ClassFileDigest {
+        private final long lastModified;
+        private final long length;
+        private final byte[] digest;
+        private final String superclassName;
+
+        ClassFileDigest(long lastModified, long length, byte[] digest, String superclassName) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.digest = digest;
+            this.superclassName = superclassName;
         }
     }
 
@@ -118,21 +373,11 @@ public class AndroidTranslator implements Translator {
         } else if (ctClass.isInterface() || ctClass.hasAnnotation(DoNotInstrument.class)) {
             return false;
         } else {
-            for (String klassName : instrumentingExcludeList) {
-                if (ctClass.getName().startsWith(klassName)) {
-                    return false;
-                }
-            }
-            for (String klassName : instrumentingList) {
-                if (ctClass.getName().startsWith(klassName)) {
-                    return true;
-                }
-            }
-            return false;
+            return ruleMatching(ctClass.getName()).startsWith("+");
         }
     }
 
-    private boolean classHasFromAndroidEquivalent(String className) {
+    /* package */ boolean classHasFromAndroidEquivalent(String className) {
         return className.startsWith(Uri.class.getName());
     }
 
@@ -0,0 +1,125 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instruments a known set of classes before anything asks for them, spread over a pool of threads, and stores the
+ * results in the {@link ClassCache} so the class loader only has to define them.
+ * <p/>
+ * Javassist's {@link ClassPool} and {@link CtClass} aren't safe to share between threads, so each worker reads classes
+ * through a {@link ClassPool} of its own. Like the class loader, a worker instruments a class's superclasses in its pool
+ * before the class itself, so two workers that both reach a superclass may each instrument it.
+ */
+public class CachePrewarmer {
+    private final AndroidTranslator androidTranslator;
+    private final ClassCache classCache;
+    private final ClassLoader sourceClassLoader;
+    private final int threadCount;
+
+    public CachePrewarmer(AndroidTranslator androidTranslator, ClassCache classCache, ClassLoader sourceClassLoader) {
+        this(androidTranslator, classCache, sourceClassLoader, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CachePrewarmer(AndroidTranslator androidTranslator, ClassCache classCache, ClassLoader sourceClassLoader, int threadCount) {
+        this.androidTranslator = androidTranslator;
+        this.classCache = classCache;
+        this.sourceClassLoader = sourceClassLoader;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Instruments whichever of {@code classNames} aren't already cached, returning once they're all done.
+     *
+     * @return the number of classes added to the cache
+     */
+    public int prewarm(final List<String> classNames) {
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicInteger instrumentedCount = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount, new PrewarmThreadFactory());
+        try {
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ClassPool classPool = new ClassPool();
+                        classPool.appendClassPath(new LoaderClassPath(sourceClassLoader));
+
+                        int index;
+                        while ((index = nextIndex.getAndIncrement()) < classNames.size()) {
+                            instrumentedCount.addAndGet(instrument(classPool, classNames.get(index)));
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return instrumentedCount.get();
+    }
+
+    /**
+     * @return the number of classes added to the cache, counting any superclasses that had to be instrumented first
+     */
+    private int instrument(ClassPool classPool, String className) {
+        if (androidTranslator.classHasFromAndroidEquivalent(className)) {
+            return 0;
+        }
+
+        try {
+            String cacheKey = androidTranslator.cacheKeyFor(classPool, className);
+            if (cacheKey == null || classCache.getClassBufferFor(className, cacheKey) != null) {
+                return 0;
+            }
+
+            // a frozen class was already instrumented in this pool, as the superclass of an earlier one
+            CtClass ctClass = classPool.get(className);
+            if (ctClass.isFrozen() || !androidTranslator.shouldInstrument(ctClass)) {
+                return 0;
+            }
+
+            int count = androidTranslator.instrumentSuperclassesOf(classPool, ctClass, classCache);
+            androidTranslator.instrument(ctClass);
+            classCache.addClass(className, cacheKey, ctClass.toBytecode());
+            return count + 1;
+        } catch (NotFoundException e) {
+            return 0;
+        } catch (Exception e) {
+            // leave it to be instrumented when it's loaded
+            System.out.println("Warning: couldn't prewarm " + className + ": " + e);
+            return 0;
+        }
+    }
+
+    private static class PrewarmThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "robolectric-prewarm-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -14,4 +14,24 @@ public interface ClassHandler {
     void afterTest();
 
     Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable;
+
+    Object methodInvoked(ShadowCallSite callSite, Object instance, Object[] params) throws Throwable;
+
+    /**
+     * Same as {@link #methodInvoked(ShadowCallSite, Object, Object[])} for a method taking a single int, without
+     * building a parameter array.
+     */
+    Object methodInvoked(ShadowCallSite callSite, Object instance, int param) throws Throwable;
+
+    /**
+     * Same as {@link #methodInvoked(ShadowCallSite, Object, Object[])} for a method taking a single object, without
+     * building a parameter array.
+     */
+    Object methodInvoked(ShadowCallSite callSite, Object instance, Object param) throws Throwable;
+
+    /**
+     * @return false if {@link #methodInvoked(ShadowCallSite, Object, Object[])} would find no shadow method to invoke
+     *         for {@code instance}, and so just return null
+     */
+    boolean hasShadowMethod(ShadowCallSite callSite, Object instance) throws Throwable;
 }
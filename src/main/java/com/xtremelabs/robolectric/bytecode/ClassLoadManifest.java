@@ -0,0 +1,45 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.util.MappedRecordStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The instrumented classes test runs have needed, in the order they were first loaded, kept next to the
+ * {@link ClassCache} so the next run can instrument them up front (see {@link CachePrewarmer}).
+ * <p/>
+ * Classes are kept in a {@link MappedRecordStore}, like the cache itself, as empty records keyed on the
+ * {@link AndroidTranslator#CACHE_VERSION} they were recorded under; classes recorded under another version are
+ * ignored until they're recorded again.
+ */
+public class ClassLoadManifest {
+    private static final String VERSION_KEY = String.valueOf(AndroidTranslator.CACHE_VERSION);
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final MappedRecordStore store;
+    private final List<String> classNames = new ArrayList<String>();
+
+    public ClassLoadManifest(String manifestPath) {
+        store = new MappedRecordStore(manifestPath);
+        for (String className : store.persistedNames()) {
+            if (store.get(className, VERSION_KEY) != null) {
+                classNames.add(className);
+            }
+        }
+    }
+
+    /**
+     * @return the classes recorded by earlier runs, in the order they were first loaded
+     */
+    public List<String> getClassNames() {
+        return Collections.unmodifiableList(classNames);
+    }
+
+    public void record(String className) {
+        if (store.get(className, VERSION_KEY) == null) {
+            store.put(className, VERSION_KEY, NO_BYTES);
+        }
+    }
+}
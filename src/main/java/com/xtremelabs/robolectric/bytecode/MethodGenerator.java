@@ -3,7 +3,10 @@ package com.xtremelabs.robolectric.bytecode;
 import javassist.*;
 
 public class MethodGenerator {
+    public static final String CALL_SITE_FIELD_PREFIX = "__callSite";
+
     private final CtClass ctClass;
+    private int callSiteCount;
 
     public MethodGenerator(CtClass ctClass) {
         this.ctClass = ctClass;
@@ -197,10 +200,12 @@ public class MethodGenerator {
             METHOD BODY TEMPLATE:
 
             if (!RobolectricInternals.shouldCallDirectly(isStatic ? class : this)) {
+                if (<callSite> == null) <callSite> = new ShadowCallSite(<className>.class, "<methodName>", <paramTypes>);
+                if (<callSite>.isUnshadowed()) <optional super call or return default (null/0)>;
+                [if (!RobolectricInternals.hasShadowMethod(<callSite>, isStatic ? null : this)) <same as above>;]
                 Object x = RobolectricInternals.methodInvoked(
-                    <className>.class, "<methodName>", isStatic ? null : this,
-                    <paramTypes>,
-                    <params>
+                    <callSite>, isStatic ? null : this[,
+                    $1 | new Object[] {<params>}]
                 );
                 if (x != null) {
                     return ((<returnClass>)x)<unboxing>;
@@ -218,25 +223,44 @@ public class MethodGenerator {
         buf.append(isStatic ? className + ".class" : "this");
         buf.append(")) {\n");
 
+        // the call site is created lazily, since instrumented methods can run before <clinit> has finished
+        String callSite = addCallSiteField();
+        buf.append("if (").append(callSite).append(" == null) ");
+        buf.append(callSite).append(" = new ").append(ShadowCallSite.class.getName()).append("(");
+        buf.append(className);
+        buf.append(".class, \"");
+        buf.append(ctMethod.getName());
+        buf.append("\", ");
+        appendParamTypeArray(buf, ctMethod);
+        buf.append(");\n");
+
+        // skip argument boxing and dispatch entirely once the ClassHandler knows there's nothing to dispatch to
+        String fallThrough = generateFallThrough(ctMethod, returnType, shouldGenerateCallToSuper);
+        buf.append("if (").append(callSite).append(".isUnshadowed()) ").append(fallThrough);
+
+        // and don't box arguments for calls that won't reach a shadow method either
+        CtClass[] parameterTypes = ctMethod.getParameterTypes();
+        if (parameterTypes.length > 0 && !hasSingleParamEntryPoint(parameterTypes)) {
+            buf.append("if (!");
+            buf.append(RobolectricInternals.class.getName());
+            buf.append(".hasShadowMethod(").append(callSite).append(", ").append(isStatic ? "null" : "this").append(")) ");
+            buf.append(fallThrough);
+        }
+
         if (!returnsVoid) {
             buf.append("Object x = ");
         }
         buf.append(RobolectricInternals.class.getName());
         buf.append(".methodInvoked(\n  ");
-        buf.append(className);
-        buf.append(".class, \"");
-        buf.append(ctMethod.getName());
-        buf.append("\", ");
+        buf.append(callSite);
+        buf.append(", ");
         if (!isStatic) {
             buf.append("this");
         } else {
             buf.append("null");
         }
-        buf.append(", ");
 
-        appendParamTypeArray(buf, ctMethod);
-        buf.append(", ");
-        appendParamArray(buf, ctMethod);
+        appendParams(buf, ctMethod);
 
         buf.append(")");
         buf.append(";\n");
@@ -247,16 +271,8 @@ public class MethodGenerator {
             buf.append(") x)");
             buf.append(returnType.unboxString());
             buf.append(";\n");
-            if (shouldGenerateCallToSuper) {
-                buf.append(generateCallToSuper(ctMethod.getName(), ctMethod.getParameterTypes()));
-            } else {
-                buf.append("return ");
-                buf.append(returnType.defaultReturnString());
-                buf.append(";\n");
-            }
-        } else {
-            buf.append("return;\n");
         }
+        buf.append(fallThrough);
 
         buf.append("}\n");
 
@@ -264,6 +280,28 @@ public class MethodGenerator {
         return methodBody;
     }
 
+    private String generateFallThrough(CtMethod ctMethod, Type returnType, boolean shouldGenerateCallToSuper) throws NotFoundException {
+        if (returnType.isVoid()) {
+            return "return;\n";
+        } else if (shouldGenerateCallToSuper) {
+            return generateCallToSuper(ctMethod.getName(), ctMethod.getParameterTypes()) + "\n";
+        } else {
+            return "return " + returnType.defaultReturnString() + ";\n";
+        }
+    }
+
+    private String addCallSiteField() throws NotFoundException {
+        String fieldName = CALL_SITE_FIELD_PREFIX + callSiteCount++ + "__";
+        try {
+            CtField field = new CtField(ctClass.getClassPool().get(ShadowCallSite.class.getName()), fieldName, ctClass);
+            field.setModifiers(Modifier.PRIVATE | Modifier.STATIC);
+            ctClass.addField(field);
+        } catch (CannotCompileException e) {
+            throw new RuntimeException(e);
+        }
+        return fieldName;
+    }
+
     public void appendParamTypeArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
         CtClass[] parameterTypes = ctMethod.getParameterTypes();
         if (parameterTypes.length == 0) {
@@ -281,6 +319,28 @@ public class MethodGenerator {
         }
     }
 
+    /**
+     * Appends the arguments to {@code RobolectricInternals.methodInvoked()}: the argument itself for the methods its
+     * single-parameter overloads take, which box and build a parameter array only once they know there's a shadow
+     * method to call, and a parameter array for the rest.
+     */
+    public void appendParams(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
+        CtClass[] parameterTypes = ctMethod.getParameterTypes();
+        if (hasSingleParamEntryPoint(parameterTypes)) {
+            buf.append(", $1");
+        } else if (parameterTypes.length > 0) {
+            buf.append(", ");
+            appendParamArray(buf, ctMethod);
+        }
+    }
+
+    private static boolean hasSingleParamEntryPoint(CtClass[] parameterTypes) {
+        // byte, short and char would widen to int and no longer match the shadow method's parameter type, and an array
+        // would be taken for the whole parameter array
+        return parameterTypes.length == 1
+                && (parameterTypes[0] == CtClass.intType || !parameterTypes[0].isPrimitive() && !parameterTypes[0].isArray());
+    }
+
     public void appendParamArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
         int parameterCount = ctMethod.getParameterTypes().length;
         if (parameterCount == 0) {
@@ -0,0 +1,140 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Read side of a jar written by {@link AheadOfTimeInstrumenter}. Jars written for a different
+ * {@link AndroidTranslator#CACHE_VERSION} are ignored.
+ * <p/>
+ * The jar also records the {@link AndroidTranslator#rulesFingerprintFor(javassist.ClassPool, String) rules} each class
+ * was instrumented under. A class is served by name as long as the instrumentation rules for it and its superclasses
+ * are still the same, which takes no more than a few string comparisons; classes whose rules have changed, say because
+ * a test added a custom shadow class for one of their superclasses, are instrumented as if the jar weren't there. The
+ * original class bytes aren't checked, so the jar has to be rebuilt along with the android.jar it was built from.
+ */
+public class PreinstrumentedJar {
+    public static final String PREINSTRUMENTED_JAR_PROPERTY = "robolectric.preinstrumented.jar";
+
+    private static final Attributes.Name VERSION_ATTRIBUTE = new Attributes.Name("version");
+    private static final String RULES_ENTRY = "META-INF/robolectric-rules.properties";
+
+    private final JarFile jarFile;
+    private final Properties rulesFingerprints;
+
+    private PreinstrumentedJar(JarFile jarFile, Properties rulesFingerprints) {
+        this.jarFile = jarFile;
+        this.rulesFingerprints = rulesFingerprints;
+    }
+
+    /**
+     * @return the jar named by the {@value #PREINSTRUMENTED_JAR_PROPERTY} system property, or null if it isn't set,
+     *         doesn't exist, or was written by an incompatible version of Robolectric
+     */
+    public static PreinstrumentedJar fromSystemProperty() {
+        String path = System.getProperty(PREINSTRUMENTED_JAR_PROPERTY);
+        if (path == null || "".equals(path.trim())) {
+            return null;
+        }
+        return open(new File(path));
+    }
+
+    public static PreinstrumentedJar open(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            JarFile jarFile = new JarFile(file);
+            Manifest manifest = jarFile.getManifest();
+            Attributes attributes = manifest == null ? null : manifest.getEntries().get("robolectric");
+            String version = attributes == null ? null : (String) attributes.get(VERSION_ATTRIBUTE);
+            if (!String.valueOf(AndroidTranslator.CACHE_VERSION).equals(version)) {
+                System.out.println("Warning: ignoring " + file + ", it was instrumented by a different version of Robolectric");
+                jarFile.close();
+                return null;
+            }
+
+            JarEntry rulesEntry = jarFile.getJarEntry(RULES_ENTRY);
+            if (rulesEntry == null) {
+                System.out.println("Warning: ignoring " + file + ", it doesn't say what rules its classes were instrumented under");
+                jarFile.close();
+                return null;
+            }
+            Properties rulesFingerprints = new Properties();
+            InputStream inputStream = jarFile.getInputStream(rulesEntry);
+            try {
+                rulesFingerprints.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            return new PreinstrumentedJar(jarFile, rulesFingerprints);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Manifest manifest() {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        Attributes attributes = new Attributes();
+        attributes.put(VERSION_ATTRIBUTE, String.valueOf(AndroidTranslator.CACHE_VERSION));
+        manifest.getEntries().put("robolectric", attributes);
+        return manifest;
+    }
+
+    static void writeRulesFingerprints(JarOutputStream jarOutputStream, Map<String, String> rulesFingerprints) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(rulesFingerprints);
+        jarOutputStream.putNextEntry(new JarEntry(RULES_ENTRY));
+        properties.store(jarOutputStream, null);
+        jarOutputStream.closeEntry();
+    }
+
+    public boolean hasClass(String className) {
+        return rulesFingerprints.containsKey(className);
+    }
+
+    /**
+     * @return the instrumented bytes for {@code className}, or null if the jar doesn't have it or instrumented it under
+     *         rules other than the ones {@code androidTranslator} would apply now
+     */
+    public byte[] getClassBytesFor(String className, AndroidTranslator androidTranslator) {
+        String rulesFingerprint = rulesFingerprints.getProperty(className);
+        if (rulesFingerprint == null || !androidTranslator.matchesRulesFingerprint(rulesFingerprint)) {
+            return null;
+        }
+
+        JarEntry entry = jarFile.getJarEntry(className.replace('.', '/') + ".class");
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            InputStream inputStream = jarFile.getInputStream(entry);
+            try {
+                int size = (int) entry.getSize();
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 ? size : 8192);
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    baos.write(buffer, 0, count);
+                }
+                return baos.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
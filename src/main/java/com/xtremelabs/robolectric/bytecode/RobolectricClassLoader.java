@@ -1,17 +1,27 @@
 package com.xtremelabs.robolectric.bytecode;
 
+import com.xtremelabs.robolectric.util.CacheDirectory;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.LoaderClassPath;
 import javassist.NotFoundException;
 
-import java.io.File;
 import java.lang.System;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RobolectricClassLoader extends javassist.Loader {
+    public static final String PREWARM_PROPERTY = "robolectric.prewarm";
+    private static final AtomicBoolean PREWARM_STARTED = new AtomicBoolean();
+
+    private final ClassHandler classHandler;
     private ClassCache classCache;
+    private ClassPool classPool;
     private AndroidTranslator androidTranslator;
+    private PreinstrumentedJar preinstrumentedJar;
+    private ClassLoadManifest classLoadManifest;
 
     public RobolectricClassLoader(ClassHandler classHandler) {
         this(classHandler, null);
@@ -19,21 +29,17 @@ public class RobolectricClassLoader extends javassist.Loader {
 
     public RobolectricClassLoader(ClassHandler classHandler, List<String> customClassNames) {
         super(RobolectricClassLoader.class.getClassLoader(), null);
+        this.classHandler = classHandler;
 
         delegateLoadingOf(AndroidTranslator.class.getName());
         delegateLoadingOf(ClassHandler.class.getName());
+        delegateLoadingOf(ShadowCallSite.class.getName());
 
-        final String classCachePath = System.getProperty("cached.robolectric.classes.path");
-        final File classCacheDirectory;
-        if (null == classCachePath || "".equals(classCachePath.trim())) {
-            classCacheDirectory = new File("./tmp");
-        } else {
-            classCacheDirectory = new File(classCachePath);
-        }
-
-        classCache = new ClassCache(new File(classCacheDirectory, "cached-robolectric-classes.jar").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
+        preinstrumentedJar = PreinstrumentedJar.fromSystemProperty();
+        classCache = new ClassCache(CacheDirectory.file("cached-robolectric-classes.cache").getAbsolutePath());
+        classLoadManifest = new ClassLoadManifest(CacheDirectory.file("robolectric-class-load-manifest.cache").getAbsolutePath());
         try {
-            ClassPool classPool = new ClassPool();
+            classPool = new ClassPool();
             classPool.appendClassPath(new LoaderClassPath(RobolectricClassLoader.class.getClassLoader()));
 
             androidTranslator = new AndroidTranslator(classHandler, classCache, customClassNames);
@@ -43,12 +49,50 @@ public class RobolectricClassLoader extends javassist.Loader {
         } catch (CannotCompileException e) {
             throw new RuntimeException(e);
         }
+
+        if (!"false".equals(System.getProperty(PREWARM_PROPERTY))) {
+            startPrewarming(classLoadManifest.getClassNames());
+        }
+    }
+
+    /**
+     * Instruments the classes earlier runs needed into the class cache on a background thread, while the test framework
+     * is still getting started. Classes are still defined lazily as they're asked for; they just shouldn't need
+     * translating by then.
+     */
+    private void startPrewarming(final List<String> classNames) {
+        // one pass per JVM is plenty, however many class loaders share the cache
+        if (classNames.isEmpty() || !PREWARM_STARTED.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread prewarmThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prewarm(classNames);
+            }
+        }, "robolectric-prewarm");
+        prewarmThread.setDaemon(true);
+        prewarmThread.start();
+    }
+
+    public ClassHandler getClassHandler() {
+        return classHandler;
     }
 
     public void addCustomShadowClass(String classOrPackageToBeInstrumented) {
         androidTranslator.addCustomShadowClass(classOrPackageToBeInstrumented);
     }
 
+    /**
+     * Instruments {@code classNames} into the class cache on several threads, ahead of their first load.
+     *
+     * @return the number of classes that weren't already cached
+     */
+    public int prewarm(List<String> classNames) {
+        return new CachePrewarmer(androidTranslator, classCache, RobolectricClassLoader.class.getClassLoader()).prewarm(classNames);
+    }
+
     @Override
     public Class loadClass(String name) throws ClassNotFoundException {
         boolean shouldComeFromThisClassLoader = !(name.startsWith("org.junit") || name.startsWith("org.hamcrest")
@@ -76,10 +120,27 @@ public class RobolectricClassLoader extends javassist.Loader {
 
     @Override
     protected Class findClass(String name) throws ClassNotFoundException {
-        byte[] classBytes = classCache.getClassBytesFor(name);
-        if (classBytes != null) {
-            return defineClass(name, classBytes, 0, classBytes.length);
+        if (preinstrumentedJar != null) {
+            byte[] classBytes = preinstrumentedJar.getClassBytesFor(name, androidTranslator);
+            if (classBytes != null) {
+                return defineClass(name, classBytes, 0, classBytes.length);
+            }
         }
-        return super.findClass(name);
+        if (classCache.hasClass(name)) {
+            String cacheKey = androidTranslator.cacheKeyFor(classPool, name);
+            ByteBuffer classBuffer = classCache.getClassBufferFor(name, cacheKey);
+            if (classBuffer != null) {
+                classLoadManifest.record(name);
+                return defineClass(name, classBuffer, (ProtectionDomain) null);
+            }
+            androidTranslator.useCacheKeyForNextLoad(name, cacheKey);
+        }
+
+        Class theClass = super.findClass(name);
+        if (theClass != null && classCache.hasClass(name)) {
+            // it was just instrumented
+            classLoadManifest.record(name);
+        }
+        return theClass;
     }
 }
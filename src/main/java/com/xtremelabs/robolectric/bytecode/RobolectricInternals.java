@@ -7,6 +7,9 @@ import com.xtremelabs.robolectric.internal.Implements;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @SuppressWarnings({"UnusedDeclaration"})
@@ -14,6 +17,7 @@ public class RobolectricInternals {
     // initialized via magic by AndroidTranslator
     private static ClassHandler classHandler;
     private static Set<String> unloadableClassNames = new HashSet<String>();
+    private static final Object[] NO_PARAMS = new Object[0];
 
     private static final ThreadLocal<Vars> ALL_VARS = new ThreadLocal<Vars>() {
         @Override protected Vars initialValue() {
@@ -57,14 +61,43 @@ public class RobolectricInternals {
         }
     }
 
+    /**
+     * @return the {@link ShadowWrangler} instrumented classes in this class loader dispatch to
+     */
+    public static ShadowWrangler getShadowWrangler() {
+        return classHandler instanceof ShadowWrangler ? (ShadowWrangler) classHandler : ShadowWrangler.getInstance();
+    }
+
     public static void bindShadowClass(Class<?> shadowClass) {
+        Class<?> realClass = getRealClass(shadowClass);
+        if (realClass != null) {
+            getShadowWrangler().bindShadowClass(realClass, shadowClass);
+        }
+    }
+
+    /**
+     * @return the names of the classes shadowed by {@code shadowClasses}, mapped to the names of their shadows, ready to
+     *         be bound all at once with {@link ShadowWrangler#bindShadowClasses(Map)}
+     */
+    public static Map<String, String> getShadowClassNames(List<Class<?>> shadowClasses) {
+        Map<String, String> shadowClassNames = new LinkedHashMap<String, String>();
+        for (Class<?> shadowClass : shadowClasses) {
+            Class<?> realClass = getRealClass(shadowClass);
+            if (realClass != null) {
+                shadowClassNames.put(realClass.getName(), shadowClass.getName());
+            }
+        }
+        return shadowClassNames;
+    }
+
+    private static Class<?> getRealClass(Class<?> shadowClass) {
         Implements realClass = shadowClass.getAnnotation(Implements.class);
         if (realClass == null) {
             throw new IllegalArgumentException(shadowClass + " is not annotated with @Implements");
         }
 
         try {
-            ShadowWrangler.getInstance().bindShadowClass(realClass.value(), shadowClass);
+            return realClass.value();
         } catch (TypeNotPresentException typeLoadingException) {
             String unloadableClassName = shadowClass.getSimpleName();
             if (isIgnorableClassLoadingException(typeLoadingException)) {
@@ -72,6 +105,7 @@ public class RobolectricInternals {
                 if (unloadableClassNames.add(unloadableClassName)) {
                     System.out.println("Warning: an error occurred while binding shadow class: " + unloadableClassName);
                 }
+                return null;
             } else {
                 throw typeLoadingException;
             }
@@ -147,6 +181,62 @@ public class RobolectricInternals {
         }
     }
 
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(ShadowCallSite callSite, Object instance, Object[] params) throws Throwable {
+        try {
+          return classHandler.methodInvoked(callSite, instance, params);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    /**
+     * Entry point for methods without parameters, so generated code doesn't have to build an empty parameter array.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(ShadowCallSite callSite, Object instance) throws Throwable {
+        return methodInvoked(callSite, instance, NO_PARAMS);
+    }
+
+    /**
+     * Entry point for methods taking a single int, such as View.setVisibility(int), so generated code doesn't have to
+     * box it or build a parameter array before knowing there's a shadow method to pass it to.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(ShadowCallSite callSite, Object instance, int param) throws Throwable {
+        try {
+          return classHandler.methodInvoked(callSite, instance, param);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    /**
+     * Entry point for methods taking a single object (but not an array), so generated code doesn't have to build a
+     * parameter array.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(ShadowCallSite callSite, Object instance, Object param) throws Throwable {
+        try {
+          return classHandler.methodInvoked(callSite, instance, param);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    /**
+     * Called by generated code before it boxes any arguments, so calls with no shadow method to go to can fall through
+     * to the default behavior without allocating anything. See MethodGenerator#generateMethodBody.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static boolean hasShadowMethod(ShadowCallSite callSite, Object instance) throws Throwable {
+        try {
+          return classHandler.hasShadowMethod(callSite, instance);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
     @SuppressWarnings({"UnusedDeclaration"})
     public static Object autobox(Object o) {
         return o;
@@ -0,0 +1,51 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.util.Join;
+
+/**
+ * One instrumented method, as seen from the code {@link MethodGenerator} writes into it. Each instrumented class keeps
+ * a call site per method in a static field, so whatever the {@link ClassHandler} works out about a method the first
+ * time it is called can be reused on every later call.
+ * <p/>
+ * Loaded by the parent class loader, so instrumented classes and the {@link ClassHandler} see the same type.
+ */
+public class ShadowCallSite {
+    private final Class<?> clazz;
+    private final String methodName;
+    private final String[] paramTypes;
+
+    // whatever the ClassHandler has resolved for this site; replaced wholesale, never mutated
+    volatile Object binding;
+    volatile boolean unshadowed;
+
+    public ShadowCallSite(Class<?> clazz, String methodName, String[] paramTypes) {
+        this.clazz = clazz;
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+    }
+
+    public Class<?> getClazz() {
+        return clazz;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String[] getParamTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * True while the {@link ClassHandler} knows calls through this site have nothing to dispatch to, so generated code
+     * can go straight to its default behavior. The handler clears it whenever shadow bindings change.
+     */
+    public boolean isUnshadowed() {
+        return unshadowed;
+    }
+
+    @Override
+    public String toString() {
+        return clazz.getName() + "." + methodName + "(" + Join.join(", ", (Object[]) paramTypes) + ")";
+    }
+}
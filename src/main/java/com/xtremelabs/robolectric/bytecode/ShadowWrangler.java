@@ -21,6 +21,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 public class ShadowWrangler implements ClassHandler {
     public static final String SHADOW_FIELD_NAME = "__shadow__";
@@ -32,7 +36,24 @@ public class ShadowWrangler implements ClassHandler {
 
     private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
     private Map<String, String> shadowClassMap = new HashMap<String, String>();
+    // the shadowClassMap contents everything derived below was worked out for, see settleShadowClasses()
+    private Map<String, String> settledShadowClassMap = new HashMap<String, String>();
+    private volatile boolean shadowClassesUnsettled;
+    // bumped whenever the settled shadow classes actually differ, so call sites know to re-bind
+    private volatile int generation;
+    // bumped on every change to shadowClassMap, so unshadowed call sites get checked again
+    private volatile int changeCount;
+    // everything below is derived from shadowClassMap and the (immutable) classes themselves
+    private final ConcurrentMap<CallSiteKey, ShadowCallSite> callSites = new ConcurrentHashMap<CallSiteKey, ShadowCallSite>();
+    private final ConcurrentMap<Class<?>, Class<?>> shadowClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+    private final ConcurrentMap<Class<?>, Boolean> implementsAnnotated = new ConcurrentHashMap<Class<?>, Boolean>();
+    private final Queue<ShadowCallSite> unshadowedCallSites = new ConcurrentLinkedQueue<ShadowCallSite>();
     private Map<Class, Field> shadowFieldMap = new HashMap<Class, Field>();
+    private final ThreadLocal<ResolvedCall> resolvedCalls = new ThreadLocal<ResolvedCall>() {
+        @Override protected ResolvedCall initialValue() {
+            return new ResolvedCall();
+        }
+    };
     private boolean logMissingShadowMethods = false;
 
     // sorry! it really only makes sense to have one per ClassLoader anyway though [xw/hu]
@@ -43,7 +64,16 @@ public class ShadowWrangler implements ClassHandler {
         return singleton;
     }
 
-    private ShadowWrangler() {
+    /**
+     * Use {@link #getInstance()} unless you're setting up a separate {@link RobolectricClassLoader} to go with the new
+     * wrangler, as {@link com.xtremelabs.robolectric.RobolectricTestRunner} does for each of its parallel worlds.
+     * Instrumented code should get hold of its own wrangler with {@link RobolectricInternals#getShadowWrangler()}.
+     */
+    public static ShadowWrangler newInstance() {
+        return new ShadowWrangler();
+    }
+
+    /* package */ ShadowWrangler() {
     }
 
     @Override
@@ -71,7 +101,10 @@ public class ShadowWrangler implements ClassHandler {
 
     @Override
     public void beforeTest() {
-        shadowClassMap.clear();
+        if (!shadowClassMap.isEmpty()) {
+            shadowClassMap.clear();
+            shadowClassesChanged();
+        }
     }
 
     @Override
@@ -79,32 +112,188 @@ public class ShadowWrangler implements ClassHandler {
     }
 
     public void bindShadowClass(Class<?> realClass, Class<?> shadowClass) {
-        shadowClassMap.put(realClass.getName(), shadowClass.getName());
+        String previousShadowClassName = shadowClassMap.put(realClass.getName(), shadowClass.getName());
+        if (!shadowClass.getName().equals(previousShadowClassName)) {
+            shadowClassesChanged();
+        }
         if (debug) System.out.println("shadow " + realClass + " with " + shadowClass);
     }
 
+    /**
+     * Binds several shadow classes at once.
+     *
+     * @param shadowClassNames shadow class names, keyed by the name of the class each one shadows
+     */
+    public void bindShadowClasses(Map<String, String> shadowClassNames) {
+        if (!shadowClassMap.entrySet().containsAll(shadowClassNames.entrySet())) {
+            shadowClassMap.putAll(shadowClassNames);
+            shadowClassesChanged();
+        }
+    }
+
+    private void shadowClassesChanged() {
+        changeCount++;
+        shadowClassesUnsettled = true;
+
+        ShadowCallSite callSite;
+        while ((callSite = unshadowedCallSites.poll()) != null) {
+            callSite.unshadowed = false;
+        }
+    }
+
+    /**
+     * Shadow bindings are usually torn down and rebuilt identically before every test, so rather than starting over
+     * on each change, this waits until the bindings are next used and only starts a new generation if they really
+     * differ from the ones everything was last worked out for.
+     */
+    private void settleShadowClasses() {
+        if (!shadowClassesUnsettled) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!shadowClassMap.equals(settledShadowClassMap)) {
+                settledShadowClassMap = new HashMap<String, String>(shadowClassMap);
+                shadowClasses.clear();
+                generation++;
+            }
+            shadowClassesUnsettled = false;
+        }
+    }
+
     @Override
     public Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable {
-        InvocationPlan invocationPlan = new InvocationPlan(clazz, methodName, instance, paramTypes);
-        if (!invocationPlan.prepare()) {
-            reportNoShadowMethodFound(clazz, methodName, paramTypes);
+        CallSiteKey key = new CallSiteKey(clazz, methodName, paramTypes);
+        ShadowCallSite callSite = callSites.get(key);
+        if (callSite == null) {
+            callSite = new ShadowCallSite(clazz, methodName, paramTypes);
+            ShadowCallSite existing = callSites.putIfAbsent(key, callSite);
+            if (existing != null) {
+                callSite = existing;
+            }
+        }
+        return methodInvoked(callSite, instance, params);
+    }
+
+    @Override
+    public Object methodInvoked(ShadowCallSite callSite, Object instance, Object[] params) throws Throwable {
+        ResolvedCall resolvedCall = resolvedCalls.get();
+        // generated code asks hasShadowMethod() first, which has already resolved the call
+        if (!resolvedCall.isFor(callSite, instance) && !resolve(callSite, instance, resolvedCall)) {
+            return null;
+        }
+        return invoke(callSite, resolvedCall, params);
+    }
+
+    @Override
+    public Object methodInvoked(ShadowCallSite callSite, Object instance, int param) throws Throwable {
+        ResolvedCall resolvedCall = resolvedCalls.get();
+        if (!resolve(callSite, instance, resolvedCall)) {
+            return null;
+        }
+        Object[] params = resolvedCall.oneParam;
+        params[0] = param;
+        try {
+            return invoke(callSite, resolvedCall, params);
+        } finally {
+            params[0] = null;
+        }
+    }
+
+    @Override
+    public Object methodInvoked(ShadowCallSite callSite, Object instance, Object param) throws Throwable {
+        ResolvedCall resolvedCall = resolvedCalls.get();
+        if (!resolve(callSite, instance, resolvedCall)) {
             return null;
         }
+        Object[] params = resolvedCall.oneParam;
+        params[0] = param;
+        try {
+            return invoke(callSite, resolvedCall, params);
+        } finally {
+            params[0] = null;
+        }
+    }
+
+    @Override
+    public boolean hasShadowMethod(ShadowCallSite callSite, Object instance) throws Throwable {
+        return resolve(callSite, instance, resolvedCalls.get());
+    }
+
+    /**
+     * Works out the shadow and shadow method a call through {@code callSite} on {@code instance} should go to, and
+     * leaves them in {@code resolvedCall} for {@link #invoke(ShadowCallSite, ResolvedCall, Object[])}.
+     *
+     * @return false if there's no shadow method to invoke
+     */
+    private boolean resolve(ShadowCallSite callSite, Object instance, ResolvedCall resolvedCall) {
+        resolvedCall.clear();
+        CallSiteBinding binding = bind(callSite);
+        Object shadow = null;
+        ShadowMethod shadowMethod = null;
+        if (binding.declaredShadowClass != null) {
+            shadow = instance == null ? null : shadowFor(instance);
+            shadowMethod = binding.shadowMethodFor(instance, shadow);
+        }
+        if (shadowMethod == null) {
+            reportNoShadowMethodFound(callSite);
+            return false;
+        }
+
+        // only filled in now, since creating the shadow may have made shadowed calls of its own on this thread
+        resolvedCall.set(callSite, instance, binding, shadow, shadowMethod);
+        return true;
+    }
+
+    private Object invoke(ShadowCallSite callSite, ResolvedCall resolvedCall, Object[] params) throws Throwable {
+        CallSiteBinding binding = resolvedCall.binding;
+        Object shadow = resolvedCall.shadow;
+        ShadowMethod shadowMethod = resolvedCall.shadowMethod;
+        // the shadow method may make shadowed calls of its own on this thread
+        resolvedCall.clear();
 
-        if (strictI18n && !invocationPlan.isI18nSafe()) {
-        	throw new I18nException("Method " + methodName + " on class " + clazz.getName() + " is not i18n-safe.");
+        if (strictI18n && !shadowMethod.i18nSafe) {
+        	throw new I18nException("Method " + callSite.getMethodName() + " on class " + callSite.getClazz().getName() + " is not i18n-safe.");
         }
 
         try {
-            return invocationPlan.getMethod().invoke(invocationPlan.getShadow(), params);
+            return shadowMethod.method.invoke(shadow, params);
         } catch (IllegalArgumentException e) {
-            throw new RuntimeException(invocationPlan.getShadow().getClass().getName() + " is not assignable from " +
-                    invocationPlan.getDeclaredShadowClass().getName(), e);
+            throw new RuntimeException(shadow.getClass().getName() + " is not assignable from " +
+                    binding.declaredShadowClass.getName(), e);
         } catch (InvocationTargetException e) {
             throw stripStackTrace(e.getCause());
         }
     }
 
+    private CallSiteBinding bind(ShadowCallSite callSite) {
+        int changesSeen = changeCount;
+        settleShadowClasses();
+
+        Object binding = callSite.binding;
+        CallSiteBinding currentBinding;
+        if (binding instanceof CallSiteBinding && ((CallSiteBinding) binding).generation == generation) {
+            currentBinding = (CallSiteBinding) binding;
+        } else {
+            currentBinding = new CallSiteBinding(callSite, generation);
+            callSite.binding = currentBinding;
+        }
+
+        if (currentBinding.unshadowed && !callSite.unshadowed) {
+            markUnshadowed(callSite, changesSeen);
+        }
+        return currentBinding;
+    }
+
+    private void markUnshadowed(ShadowCallSite callSite, int changesSeen) {
+        callSite.unshadowed = true;
+        unshadowedCallSites.add(callSite);
+        // if the bindings changed meanwhile, shadowClassesChanged() may already have drained the queue without us
+        if (changeCount != changesSeen) {
+            callSite.unshadowed = false;
+        }
+    }
+
     private <T extends Throwable> T stripStackTrace(T throwable) {
         List<StackTraceElement> stackTrace = new ArrayList<StackTraceElement>();
         for (StackTraceElement stackTraceElement : throwable.getStackTrace()) {
@@ -121,10 +310,10 @@ public class ShadowWrangler implements ClassHandler {
         return throwable;
     }
 
-    private void reportNoShadowMethodFound(Class clazz, String methodName, String[] paramTypes) {
+    private void reportNoShadowMethodFound(ShadowCallSite callSite) {
         if (logMissingShadowMethods) {
-            System.out.println("No Shadow method found for " + clazz.getSimpleName() + "." + methodName + "(" +
-                    Join.join(", ", (Object[]) paramTypes) + ")");
+            System.out.println("No Shadow method found for " + callSite.getClazz().getSimpleName() + "." + callSite.getMethodName() + "(" +
+                    Join.join(", ", (Object[]) callSite.getParamTypes()) + ")");
         }
     }
 
@@ -162,12 +351,11 @@ public class ShadowWrangler implements ClassHandler {
             return shadow;
         }
 
-        String shadowClassName = getShadowClassName(instance.getClass());
+        Class<?> shadowClass = findShadowClass(instance.getClass());
 
         if (debug)
-            System.out.println("creating new " + shadowClassName + " as shadow for " + instance.getClass().getName());
+            System.out.println("creating new " + shadowClass + " as shadow for " + instance.getClass().getName());
         try {
-            Class<?> shadowClass = loadClass(shadowClassName, instance.getClass().getClassLoader());
             Constructor<?> constructor = findConstructor(instance, shadowClass);
             if (constructor != null) {
                 shadow = constructor.newInstance(instance);
@@ -206,6 +394,17 @@ public class ShadowWrangler implements ClassHandler {
         }
     }
 
+    private Class<?> findShadowClass(Class<?> clazz) {
+        settleShadowClasses();
+        Class<?> shadowClass = shadowClasses.get(clazz);
+        if (shadowClass == null) {
+            String shadowClassName = getShadowClassName(clazz);
+            shadowClass = shadowClassName == null ? NoShadow.class : loadClass(shadowClassName, clazz.getClassLoader());
+            shadowClasses.put(clazz, shadowClass);
+        }
+        return shadowClass == NoShadow.class ? null : shadowClass;
+    }
+
     private String getShadowClassName(Class clazz) {
         String shadowClassName = null;
         while (shadowClassName == null && clazz != null) {
@@ -275,128 +474,92 @@ public class ShadowWrangler implements ClassHandler {
         logMissingShadowMethods = false;
     }
 
-    private class InvocationPlan {
-        private Class clazz;
-        private ClassLoader classLoader;
-        private String methodName;
-        private Object instance;
-        private String[] paramTypes;
-        private Class<?> declaredShadowClass;
-        private Method method;
-        private Object shadow;
-
-        public InvocationPlan(Class clazz, String methodName, Object instance, String... paramTypes) {
-            this.clazz = clazz;
-            this.classLoader = clazz.getClassLoader();
-            this.methodName = methodName;
-            this.instance = instance;
-            this.paramTypes = paramTypes;
-        }
-
-        public Class<?> getDeclaredShadowClass() {
-            return declaredShadowClass;
-        }
-
-        public Method getMethod() {
-            return method;
-        }
-
-        public Object getShadow() {
-            return shadow;
-        }
-
-        public boolean isI18nSafe() {
-        	// method is loaded by another class loader. So do everything reflectively.
-        	Annotation[] annos = method.getAnnotations();
-        	for (int i = 0; i < annos.length; i++) {
-        		String name = annos[i].annotationType().getName();
-        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
-					try {
-						Method m = (annos[i]).getClass().getMethod("i18nSafe");
-	        			return (Boolean) m.invoke(annos[i]);
-					} catch (Exception e) {
-						return true;	// should probably throw some other exception
-					}
-        		}
-        	}
-
-        	return true;
-        }
-
-        public boolean prepare() {
-            Class<?>[] paramClasses = getParamClasses();
-
-            Class<?> originalClass = loadClass(clazz.getName(), classLoader);
-
-            declaredShadowClass = findDeclaredShadowClassForMethod(originalClass, methodName, paramClasses);
-            if (declaredShadowClass == null) {
-                return false;
-            }
-
-            if (methodName.equals("<init>")) {
-                methodName = "__constructor__";
-            }
-
-            if (instance != null) {
-                shadow = shadowFor(instance);
-                method = getMethod(shadow.getClass(), methodName, paramClasses);
+    /**
+     * What a {@link ShadowCallSite} resolves to for one generation of shadow bindings: the declaring class's shadow
+     * (or null if there isn't one, in which case calls return straight away), and the shadow method for each shadow
+     * class seen at the site. Most sites only ever see one shadow class, but a site on a base class such as View sees
+     * one per shadowed subclass, and often alternates between them.
+     */
+    private class CallSiteBinding {
+        private final int generation;
+        private final ShadowCallSite callSite;
+        private final ClassLoader classLoader;
+        private final String methodName;
+        private final Class<?>[] paramClasses;
+        private final Class<?> declaredShadowClass;
+        private Class<?> staticShadowClass;
+        // true if no call through this site can reach a shadow method while this binding is current
+        private final boolean unshadowed;
+        private final ConcurrentMap<Class<?>, ShadowMethod> shadowMethods = new ConcurrentHashMap<Class<?>, ShadowMethod>(4, 0.75f, 1);
+
+        public CallSiteBinding(ShadowCallSite callSite, int generation) {
+            this.generation = generation;
+            this.callSite = callSite;
+            this.classLoader = callSite.getClazz().getClassLoader();
+            this.methodName = callSite.getMethodName().equals("<init>") ? "__constructor__" : callSite.getMethodName();
+            this.paramClasses = loadParamClasses();
+
+            Class<?> clazz = callSite.getClazz();
+            boolean isStatic;
+            if (callSite.getMethodName().equals("<init>")) {
+                isStatic = false;
+                declaredShadowClass = findShadowClass(clazz);
             } else {
-                shadow = null;
-                method = getMethod(findShadowClass(clazz), methodName, paramClasses);
+                Method realMethod = getRealMethod(clazz);
+                isStatic = Modifier.isStatic(realMethod.getModifiers());
+                declaredShadowClass = findShadowClass(realMethod.getDeclaringClass());
+            }
+            if (declaredShadowClass != null) {
+                staticShadowClass = findShadowClass(clazz);
             }
+            unshadowed = declaredShadowClass == null || (isStatic && shadowMethodOn(staticShadowClass).method == null);
+        }
 
+        /**
+         * @return the shadow method to invoke on {@code shadow} (both null for static methods), or null if there isn't
+         *         one
+         */
+        public ShadowMethod shadowMethodFor(Object instance, Object shadow) {
+            ShadowMethod shadowMethod = shadowMethodOn(instance == null ? staticShadowClass : shadow.getClass());
+            Method method = shadowMethod.method;
             if (method == null) {
                 if (debug) {
-                    System.out.println("No method found for " + clazz + "." + methodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
+                    System.out.println("No method found for " + callSite.getClazz() + "." + methodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
                 }
-                return false;
+                return null;
             }
 
-            if ((instance == null) != Modifier.isStatic(method.getModifiers())) {
-                throw new RuntimeException("method staticness of " + clazz.getName() + "." + methodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
+            if ((instance == null) != shadowMethod.isStatic) {
+                throw new RuntimeException("method staticness of " + callSite.getClazz().getName() + "." + methodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
             }
 
-            method.setAccessible(true);
-
-            return true;
-        }
-
-        private Class<?> findDeclaredShadowClassForMethod(Class<?> originalClass, String methodName, Class<?>[] paramClasses) {
-            Class<?> declaringClass = findDeclaringClassForMethod(methodName, paramClasses, originalClass);
-            return findShadowClass(declaringClass);
+            return shadowMethod;
         }
 
-        private Class<?> findShadowClass(Class<?> originalClass) {
-            String declaredShadowClassName = getShadowClassName(originalClass);
-            if (declaredShadowClassName == null) {
-                return null;
+        private ShadowMethod shadowMethodOn(Class<?> shadowClass) {
+            ShadowMethod shadowMethod = shadowMethods.get(shadowClass);
+            if (shadowMethod == null) {
+                shadowMethod = new ShadowMethod(getMethod(shadowClass, methodName, paramClasses));
+                shadowMethods.put(shadowClass, shadowMethod);
             }
-            return loadClass(declaredShadowClassName, classLoader);
+            return shadowMethod;
         }
 
-        private Class<?> findDeclaringClassForMethod(String methodName, Class<?>[] paramClasses, Class<?> originalClass) {
-            Class<?> declaringClass;
-            if (this.methodName.equals("<init>")) {
-                declaringClass = originalClass;
-            } else {
-                Method originalMethod;
-                try {
-                    originalMethod = originalClass.getDeclaredMethod(methodName, paramClasses);
-                } catch (NoSuchMethodException e) {
-                    throw new RuntimeException(e);
-                }
-                declaringClass = originalMethod.getDeclaringClass();
+        private Method getRealMethod(Class<?> originalClass) {
+            try {
+                return originalClass.getDeclaredMethod(methodName, paramClasses);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
             }
-            return declaringClass;
         }
 
-        private Class<?>[] getParamClasses() {
-            Class<?>[] paramClasses = new Class<?>[paramTypes.length];
-
+        private Class<?>[] loadParamClasses() {
+            String[] paramTypes = callSite.getParamTypes();
+            Class<?>[] classes = new Class<?>[paramTypes.length];
             for (int i = 0; i < paramTypes.length; i++) {
-                paramClasses[i] = loadClass(paramTypes[i], classLoader);
+                classes[i] = loadClass(paramTypes[i], classLoader);
             }
-            return paramClasses;
+            return classes;
         }
 
         private Method getMethod(Class<?> clazz, String methodName, Class<?>[] paramClasses) {
@@ -415,26 +578,121 @@ public class ShadowWrangler implements ClassHandler {
                 method = null;
             }
 
+            if (method != null) {
+                method.setAccessible(true);
+            }
+
             return method;
         }
 
         private boolean isOnShadowClass(Method method) {
             Class<?> declaringClass = method.getDeclaringClass();
-            // why doesn't getAnnotation(com.xtremelabs.robolectric.internal.Implements) work here? It always returns null. pg 20101115
-            // It doesn't work because the method and declaringClass were loaded by the delegate class loader. Different classloaders so types don't match. mp 20110823
-            for (Annotation annotation : declaringClass.getAnnotations()) {
-                if (annotation.annotationType().toString().equals("interface com.xtremelabs.robolectric.internal.Implements")) {
-                    return true;
+            Boolean onShadowClass = implementsAnnotated.get(declaringClass);
+            if (onShadowClass == null) {
+                onShadowClass = false;
+                // why doesn't getAnnotation(com.xtremelabs.robolectric.internal.Implements) work here? It always returns null. pg 20101115
+                // It doesn't work because the method and declaringClass were loaded by the delegate class loader. Different classloaders so types don't match. mp 20110823
+                for (Annotation annotation : declaringClass.getAnnotations()) {
+                    if (annotation.annotationType().toString().equals("interface com.xtremelabs.robolectric.internal.Implements")) {
+                        onShadowClass = true;
+                    }
                 }
+                implementsAnnotated.put(declaringClass, onShadowClass);
             }
-            return false;
+            return onShadowClass;
+        }
+    }
+
+    /**
+     * The shadow method (if any) to call on a particular shadow class, with everything we check on each call worked
+     * out up front.
+     */
+    private static class ShadowMethod {
+        private final Method method;
+        private final boolean isStatic;
+        private final boolean i18nSafe;
+
+        ShadowMethod(Method method) {
+            this.method = method;
+            this.isStatic = method != null && Modifier.isStatic(method.getModifiers());
+            this.i18nSafe = method == null || isI18nSafe(method);
+        }
+
+        private static boolean isI18nSafe(Method method) {
+        	// method is loaded by another class loader. So do everything reflectively.
+        	Annotation[] annos = method.getAnnotations();
+        	for (int i = 0; i < annos.length; i++) {
+        		String name = annos[i].annotationType().getName();
+        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
+					try {
+						Method m = (annos[i]).getClass().getMethod("i18nSafe");
+	        			return (Boolean) m.invoke(annos[i]);
+					} catch (Exception e) {
+						return true;	// should probably throw some other exception
+					}
+        		}
+        	}
+
+        	return true;
+        }
+    }
+
+    /**
+     * The call the current thread has just resolved and is about to invoke, reused for every call so that resolving
+     * one doesn't allocate. Also holds the parameter array for the single-parameter entry points; Method.invoke() has
+     * read the parameters out of it by the time the shadow method can make a call of its own that reuses it.
+     */
+    private static class ResolvedCall {
+        private final Object[] oneParam = new Object[1];
+        private ShadowCallSite callSite;
+        private Object instance;
+        private CallSiteBinding binding;
+        private Object shadow;
+        private ShadowMethod shadowMethod;
+
+        boolean isFor(ShadowCallSite callSite, Object instance) {
+            return this.callSite == callSite && this.instance == instance;
+        }
+
+        void set(ShadowCallSite callSite, Object instance, CallSiteBinding binding, Object shadow, ShadowMethod shadowMethod) {
+            this.callSite = callSite;
+            this.instance = instance;
+            this.binding = binding;
+            this.shadow = shadow;
+            this.shadowMethod = shadowMethod;
+        }
+
+        void clear() {
+            set(null, null, null, null, null);
+        }
+    }
+
+    private static class CallSiteKey {
+        private final Class<?> clazz;
+        private final String methodName;
+        private final String[] paramTypes;
+
+        CallSiteKey(Class<?> clazz, String methodName, String[] paramTypes) {
+            this.clazz = clazz;
+            this.methodName = methodName;
+            this.paramTypes = paramTypes;
         }
 
         @Override
-        public String toString() {
-            return "delegating to " + declaredShadowClass.getName() + "." + method.getName()
-                    + "(" + Arrays.toString(method.getParameterTypes()) + ")";
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CallSiteKey)) return false;
+            CallSiteKey that = (CallSiteKey) o;
+            return clazz == that.clazz && methodName.equals(that.methodName) && Arrays.equals(paramTypes, that.paramTypes);
         }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * clazz.hashCode() + methodName.hashCode()) + Arrays.hashCode(paramTypes);
+        }
+    }
+
+    private static class NoShadow {
     }
 
     private class MetaShadow {
@@ -7,6 +7,7 @@ import org.w3c.dom.NodeList;
 
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
 import java.util.HashMap;
@@ -17,15 +18,28 @@ import java.util.Set;
 public class AttrResourceLoader extends XmlLoader {
     Map<String, String> classAttrEnumToValue = new HashMap<String, String>();
     Set<String> knownClassAttrs = new HashSet<String>();
+    // which class along each view class's hierarchy declares an attr, or NOT_DECLARED
+    private final Map<Class<?>, Map<String, String>> knownAttrClassesByViewClass = new HashMap<Class<?>, Map<String, String>>();
+    private final Map<Class<?>, Map<String, String>> knownSystemAttrClassesByViewClass = new HashMap<Class<?>, Map<String, String>>();
+    private static final String NOT_DECLARED = new String("not declared");
+    private final XPathExpression enumXPath;
 
     public AttrResourceLoader(ResourceExtractor resourceExtractor) {
         super(resourceExtractor);
+        try {
+            enumXPath = XPathFactory.newInstance().newXPath().compile("/resources/declare-styleable/attr/enum");
+        } catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
     protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        XPathExpression stringsXPath = XPathFactory.newInstance().newXPath().compile("/resources/declare-styleable/attr/enum");
-        NodeList stringNodes = (NodeList) stringsXPath.evaluate(document, XPathConstants.NODESET);
+        synchronized (this) {
+            knownAttrClassesByViewClass.clear();
+            knownSystemAttrClassesByViewClass.clear();
+        }
+        NodeList stringNodes = (NodeList) enumXPath.evaluate(document, XPathConstants.NODESET);
         for (int i = 0; i < stringNodes.getLength(); i++) {
             Node node = stringNodes.item(i);
             String viewName = node.getParentNode().getParentNode().getAttributes().getNamedItem("name").getNodeValue();
@@ -49,7 +63,23 @@ public class AttrResourceLoader extends XmlLoader {
         return findKnownAttrClass(attrName, viewClass, isSystem) != null;
     }
 
-    private String findKnownAttrClass(String attrName, Class<?> clazz, boolean isSystem) {
+    private synchronized String findKnownAttrClass(String attrName, Class<?> viewClass, boolean isSystem) {
+        Map<Class<?>, Map<String, String>> knownAttrClasses = isSystem ? knownSystemAttrClassesByViewClass : knownAttrClassesByViewClass;
+        Map<String, String> knownAttrClassesByAttrName = knownAttrClasses.get(viewClass);
+        if (knownAttrClassesByAttrName == null) {
+            knownAttrClassesByAttrName = new HashMap<String, String>();
+            knownAttrClasses.put(viewClass, knownAttrClassesByAttrName);
+        }
+
+        String className = knownAttrClassesByAttrName.get(attrName);
+        if (className == null) {
+            className = searchForKnownAttrClass(attrName, viewClass, isSystem);
+            knownAttrClassesByAttrName.put(attrName, className == null ? NOT_DECLARED : className);
+        }
+        return className == NOT_DECLARED ? null : className;
+    }
+
+    private String searchForKnownAttrClass(String attrName, Class<?> clazz, boolean isSystem) {
         while (clazz != null) {
             String className = clazz.getName();
             if (isSystem) {
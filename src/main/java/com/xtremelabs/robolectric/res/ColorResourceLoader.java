@@ -7,7 +7,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class ColorResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
-    private ResourceReferenceResolver<Integer> colorResolver = new ResourceReferenceResolver<Integer>("color");
+    private final ResourceReferenceResolver<Integer> colorResolver;
     private static Map<String, Integer> androidColors = new HashMap<String, Integer>();
 
     static {
@@ -25,7 +25,15 @@ public class ColorResourceLoader extends XpathResourceXmlLoader implements Resou
     }
 
     public ColorResourceLoader(ResourceExtractor resourceExtractor) {
+        this(resourceExtractor, null);
+    }
+
+    /**
+     * @param baseLoader answers for any color that isn't loaded into this one
+     */
+    public ColorResourceLoader(ResourceExtractor resourceExtractor, ColorResourceLoader baseLoader) {
         super(resourceExtractor, "/resources/color");
+        colorResolver = new ResourceReferenceResolver<Integer>("color", baseLoader == null ? null : baseLoader.colorResolver);
     }
 
     public int getValue(int colorId) {
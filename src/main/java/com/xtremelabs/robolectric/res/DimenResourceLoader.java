@@ -6,10 +6,18 @@ public class DimenResourceLoader extends XpathResourceXmlLoader implements Resou
 
     private static final String[] UNITS = { "dp", "dip", "pt", "px", "sp", "mm", "in" };
 
-    private ResourceReferenceResolver<Float> dimenResolver = new ResourceReferenceResolver<Float>("dimen");
+    private final ResourceReferenceResolver<Float> dimenResolver;
 
     public DimenResourceLoader(ResourceExtractor resourceExtractor) {
+        this(resourceExtractor, null);
+    }
+
+    /**
+     * @param baseLoader answers for any dimen that isn't loaded into this one
+     */
+    public DimenResourceLoader(ResourceExtractor resourceExtractor, DimenResourceLoader baseLoader) {
         super(resourceExtractor, "/resources/dimen");
+        dimenResolver = new ResourceReferenceResolver<Float>("dimen", baseLoader == null ? null : baseLoader.dimenResolver);
     }
 
     public float getValue(int resourceId) {
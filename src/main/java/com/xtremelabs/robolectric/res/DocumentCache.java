@@ -0,0 +1,236 @@
+package com.xtremelabs.robolectric.res;
+
+import com.xtremelabs.robolectric.util.CacheDirectory;
+import com.xtremelabs.robolectric.util.MappedRecordStore;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resource XML files as they were last parsed, kept in a compact binary form next to the class cache so other runner
+ * instances and other forks can rebuild their DOM without running the XML parser again.
+ * <p/>
+ * Entries are kept in a {@link MappedRecordStore}, like instrumented classes: appended to a memory-mapped file
+ * shared by every JVM using the same cache directory, keyed on the file's path, modification time and length, so an
+ * edited resource file simply misses and is parsed again. Set the {@value #DOCUMENT_CACHE_PROPERTY} system property to
+ * {@code false} to always parse.
+ * <p/>
+ * One instance is shared by the whole JVM: {@link com.xtremelabs.robolectric.RobolectricTestRunner} has its class
+ * loaders delegate this class to the one that loaded the runner.
+ */
+public class DocumentCache {
+    public static final String DOCUMENT_CACHE_PROPERTY = "robolectric.documentCache";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte ELEMENT = 1;
+    private static final byte TEXT = 2;
+    private static final byte CDATA = 3;
+    private static final byte PROCESSING_INSTRUCTION = 4;
+    private static final byte END = 0;
+
+    private static DocumentCache defaultDocumentCache;
+
+    private final MappedRecordStore store;
+
+    public DocumentCache(String documentCachePath) {
+        store = new MappedRecordStore(documentCachePath);
+    }
+
+    /**
+     * @return the document cache in the {@link CacheDirectory}, or null if it has been turned off
+     */
+    public static synchronized DocumentCache getDefault() {
+        if ("false".equals(System.getProperty(DOCUMENT_CACHE_PROPERTY))) {
+            return null;
+        }
+
+        if (defaultDocumentCache == null) {
+            defaultDocumentCache = new DocumentCache(CacheDirectory.file("robolectric-resource-documents.cache").getAbsolutePath());
+        }
+        return defaultDocumentCache;
+    }
+
+    /**
+     * @return a fresh copy of the document last stored for {@code xmlFile}, or null if it hasn't been stored or the file
+     *         has changed since
+     */
+    public Document getDocument(File xmlFile, DocumentBuilder documentBuilder) {
+        ByteBuffer encoded = store.get(xmlFile.getAbsolutePath(), keyFor(xmlFile));
+        if (encoded == null) {
+            return null;
+        }
+
+        Document document = documentBuilder.newDocument();
+        new Decoder(encoded, document).readChildren(document);
+        return document;
+    }
+
+    public void addDocument(File xmlFile, Document document) {
+        String key = keyFor(xmlFile);
+        try {
+            Encoder encoder = new Encoder();
+            encoder.writeChildren(document);
+            store.put(xmlFile.getAbsolutePath(), key, encoder.toByteArray());
+        } catch (UnsupportedNodeException e) {
+            // leave it to be parsed every time
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String keyFor(File xmlFile) {
+        return FORMAT_VERSION + ":" + xmlFile.lastModified() + ":" + xmlFile.length();
+    }
+
+    /**
+     * Writes a node's children depth first. Each distinct string is written once per document and referred to by
+     * index after that, since element and attribute names repeat so much.
+     */
+    private static class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+        void writeChildren(Node parent) throws IOException {
+            NodeList children = parent.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                writeNode(children.item(i));
+            }
+            out.writeByte(END);
+        }
+
+        private void writeNode(Node node) throws IOException {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    out.writeByte(ELEMENT);
+                    writeString(node.getNamespaceURI());
+                    writeString(node.getNodeName());
+                    NamedNodeMap attributes = node.getAttributes();
+                    out.writeInt(attributes.getLength());
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        Node attribute = attributes.item(i);
+                        writeString(attribute.getNamespaceURI());
+                        writeString(attribute.getNodeName());
+                        writeString(attribute.getNodeValue());
+                    }
+                    writeChildren(node);
+                    break;
+                case Node.TEXT_NODE:
+                    out.writeByte(TEXT);
+                    writeString(node.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    out.writeByte(CDATA);
+                    writeString(node.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    out.writeByte(PROCESSING_INSTRUCTION);
+                    writeString(node.getNodeName());
+                    writeString(node.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    break;
+                default:
+                    throw new UnsupportedNodeException();
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            Integer index = stringIndexes.get(string);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            stringIndexes.put(string, stringIndexes.size());
+            byte[] utf8 = string.getBytes("UTF-8");
+            out.writeInt(-2 - utf8.length);
+            out.write(utf8);
+        }
+
+        byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class Decoder {
+        private final ByteBuffer in;
+        private final Document document;
+        private final List<String> strings = new ArrayList<String>();
+
+        Decoder(ByteBuffer in, Document document) {
+            this.in = in;
+            this.document = document;
+        }
+
+        void readChildren(Node parent) {
+            byte type;
+            while ((type = in.get()) != END) {
+                switch (type) {
+                    case ELEMENT:
+                        Element element = document.createElementNS(readString(), readString());
+                        int attributeCount = in.getInt();
+                        for (int i = 0; i < attributeCount; i++) {
+                            element.setAttributeNS(readString(), readString(), readString());
+                        }
+                        readChildren(element);
+                        parent.appendChild(element);
+                        break;
+                    case TEXT:
+                        parent.appendChild(document.createTextNode(readString()));
+                        break;
+                    case CDATA:
+                        parent.appendChild(document.createCDATASection(readString()));
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        parent.appendChild(document.createProcessingInstruction(readString(), readString()));
+                        break;
+                    default:
+                        throw new RuntimeException("corrupt document cache entry");
+                }
+            }
+        }
+
+        private String readString() {
+            int index = in.getInt();
+            if (index == -1) {
+                return null;
+            }
+            if (index >= 0) {
+                return strings.get(index);
+            }
+
+            byte[] utf8 = new byte[-2 - index];
+            in.get(utf8);
+            try {
+                String string = new String(utf8, "UTF-8");
+                strings.add(string);
+                return string;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class UnsupportedNodeException extends RuntimeException {
+    }
+}
@@ -6,23 +6,40 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.FileFilter;
+import java.util.HashMap;
+import java.util.Map;
 
 public class DocumentLoader {
     private final XmlLoader[] xmlLoaders;
     private final DocumentBuilderFactory documentBuilderFactory;
-    private FileFilter xmlFileFilter = new FileFilter() {
+    private final Map<File, Document> parsedDocuments;
+    private DocumentBuilder documentBuilder;
+    static final FileFilter XML_FILE_FILTER = new FileFilter() {
         @Override public boolean accept(File file) {
             return file.getName().endsWith(".xml");
         }
     };
 
     public DocumentLoader(XmlLoader... xmlLoaders) {
+        this(new HashMap<File, Document>(), xmlLoaders);
+    }
+
+    /**
+     * Creates a loader that shares parsed files with every other loader given the same {@code parsedDocuments}, so
+     * several passes over the same directory only parse each file once. The loaders mustn't modify the documents.
+     */
+    public DocumentLoader(Map<File, Document> parsedDocuments, XmlLoader... xmlLoaders) {
         this.xmlLoaders = xmlLoaders;
+        this.parsedDocuments = parsedDocuments;
+        documentBuilderFactory = newDocumentBuilderFactory();
+    }
 
-        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    static DocumentBuilderFactory newDocumentBuilderFactory() {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
         documentBuilderFactory.setNamespaceAware(true);
         documentBuilderFactory.setIgnoringComments(true);
         documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+        return documentBuilderFactory;
     }
 
     public void loadResourceXmlDirs(File... resourceXmlDirs) throws Exception {
@@ -48,20 +65,41 @@ public class DocumentLoader {
             throw new RuntimeException("no such directory " + resourceXmlDir);
         }
 
-        for (File file : resourceXmlDir.listFiles(xmlFileFilter)) {
+        for (File file : resourceXmlDir.listFiles(XML_FILE_FILTER)) {
             loadResourceXmlFile(file, isSystem);
         }
     }
 
-    private void loadResourceXmlFile(File file, boolean isSystem) throws Exception {
+    public void loadResourceXmlFile(File file, boolean isSystem) throws Exception {
+        Document document = parsedDocuments.get(file);
+        if (document == null) {
+            document = parse(file);
+            parsedDocuments.put(file, document);
+        }
+
         for (XmlLoader xmlLoader : xmlLoaders) {
-            xmlLoader.processResourceXml(file, parse(file), isSystem);
+            xmlLoader.processResourceXml(file, document, isSystem);
         }
     }
 
     private Document parse(File xmlFile) throws Exception {
-        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        return documentBuilder.parse(xmlFile);
+        if (documentBuilder == null) {
+            documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        }
+        return parse(documentBuilder, xmlFile);
     }
 
+    static Document parse(DocumentBuilder documentBuilder, File xmlFile) throws Exception {
+        DocumentCache documentCache = DocumentCache.getDefault();
+        if (documentCache == null) {
+            return documentBuilder.parse(xmlFile);
+        }
+
+        Document document = documentCache.getDocument(xmlFile, documentBuilder);
+        if (document == null) {
+            document = documentBuilder.parse(xmlFile);
+            documentCache.addDocument(xmlFile, document);
+        }
+        return document;
+    }
 }
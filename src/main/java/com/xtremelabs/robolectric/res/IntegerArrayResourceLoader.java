@@ -1,12 +1,8 @@
 package com.xtremelabs.robolectric.res;
 
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -33,12 +29,8 @@ public class IntegerArrayResourceLoader extends XpathResourceXmlLoader {
     }
 
     @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
         List<Integer> arrayValues = new ArrayList<Integer>();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-
+        for (Node childNode : getItemNodes(node)) {
             String value = childNode.getTextContent();
             if (value.startsWith("@")) {
                 value = value.substring(1);
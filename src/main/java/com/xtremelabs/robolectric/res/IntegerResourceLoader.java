@@ -4,10 +4,18 @@ import org.w3c.dom.Node;
 
 public class IntegerResourceLoader extends XTagXmlResourceLoader implements ResourceValueConverter {
 
-	private final ResourceReferenceResolver< Integer > integerResolver = new ResourceReferenceResolver< Integer >( "integer" );
+	private final ResourceReferenceResolver< Integer > integerResolver;
 
 	public IntegerResourceLoader( ResourceExtractor resourceExtractor ) {
+		this( resourceExtractor, null );
+	}
+
+	/**
+	 * @param baseLoader answers for any integer that isn't loaded into this one
+	 */
+	public IntegerResourceLoader( ResourceExtractor resourceExtractor, IntegerResourceLoader baseLoader ) {
 		super( resourceExtractor, "integer" );
+		integerResolver = new ResourceReferenceResolver< Integer >( "integer", baseLoader == null ? null : baseLoader.integerResolver );
 	}
 
 	public int getValue( int resourceId ) {
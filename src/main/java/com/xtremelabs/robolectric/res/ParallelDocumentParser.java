@@ -0,0 +1,126 @@
+package com.xtremelabs.robolectric.res;
+
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses resource XML files on several threads, ahead of the {@link DocumentLoader}s that will process them.
+ * <p/>
+ * Only the parsing happens in parallel. The loaders are handed the parsed documents one file at a time in their usual
+ * order, so which definition wins when local and system resources share a name never depends on timing. A file that
+ * fails to parse is left out, to fail in the usual way when its loader gets to it.
+ * <p/>
+ * Every parser shares one pool of daemon threads, started the first time it's needed. Idle threads go away after a
+ * while, so the pool costs nothing between test runs.
+ */
+public class ParallelDocumentParser {
+    public static final String THREADS_PROPERTY = "robolectric.resourceLoadingThreads";
+
+    private static ExecutorService executorService;
+
+    private final int threadCount;
+
+    public ParallelDocumentParser() {
+        this(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ParallelDocumentParser(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return the parsed documents for the XML files in {@code resourceXmlDirs}, to be given to
+     *         {@link DocumentLoader#DocumentLoader(Map, XmlLoader...)}; empty when running on a single thread, since
+     *         the loaders may as well parse as they go
+     */
+    public Map<File, Document> parse(List<File> resourceXmlDirs) {
+        final Map<File, Document> parsedDocuments = new HashMap<File, Document>();
+        if (threadCount <= 1) {
+            return parsedDocuments;
+        }
+
+        final List<File> xmlFiles = new ArrayList<File>();
+        for (File resourceXmlDir : resourceXmlDirs) {
+            File[] files = resourceXmlDir == null ? null : resourceXmlDir.listFiles(DocumentLoader.XML_FILE_FILTER);
+            if (files != null) {
+                for (File file : files) {
+                    xmlFiles.add(file);
+                }
+            }
+        }
+
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final DocumentBuilderFactory documentBuilderFactory = DocumentLoader.newDocumentBuilderFactory();
+        ExecutorService executorService = getExecutorService();
+        List<Future<Map<File, Document>>> workers = new ArrayList<Future<Map<File, Document>>>();
+        try {
+            for (int i = 0; i < Math.min(threadCount, xmlFiles.size()); i++) {
+                workers.add(executorService.submit(new Callable<Map<File, Document>>() {
+                    @Override
+                    public Map<File, Document> call() throws Exception {
+                        // DocumentBuilders can't be shared between threads
+                        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+                        Map<File, Document> documents = new HashMap<File, Document>();
+                        int index;
+                        while ((index = nextIndex.getAndIncrement()) < xmlFiles.size()) {
+                            File xmlFile = xmlFiles.get(index);
+                            try {
+                                documents.put(xmlFile, DocumentLoader.parse(documentBuilder, xmlFile));
+                            } catch (Exception e) {
+                                // its loader will parse it again and report the problem
+                            }
+                        }
+                        return documents;
+                    }
+                }));
+            }
+
+            for (Future<Map<File, Document>> worker : workers) {
+                parsedDocuments.putAll(worker.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<Map<File, Document>> worker : workers) {
+                worker.cancel(true);
+            }
+        }
+        return parsedDocuments;
+    }
+
+    private static synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            // each parse hands it no more workers than its parser's thread count, so it only grows as far as the parses
+            // running at once need
+            executorService = Executors.newCachedThreadPool(new ParserThreadFactory());
+        }
+        return executorService;
+    }
+
+    private static class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "robolectric-resources-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
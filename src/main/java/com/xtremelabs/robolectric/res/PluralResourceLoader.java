@@ -1,12 +1,8 @@
 package com.xtremelabs.robolectric.res;
 
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,15 +11,28 @@ import java.util.Map;
 public class PluralResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
     Map<String, PluralRules> plurals = new HashMap<String, PluralRules>();
     private StringResourceLoader stringResourceLoader;
+    private final PluralResourceLoader baseLoader;
 
     public PluralResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader) {
+        this(resourceExtractor, stringResourceLoader, null);
+    }
+
+    /**
+     * @param baseLoader answers for any plurals that aren't loaded into this one
+     */
+    public PluralResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader,
+                                PluralResourceLoader baseLoader) {
         super(resourceExtractor, "/resources/plurals");
         this.stringResourceLoader = stringResourceLoader;
+        this.baseLoader = baseLoader;
     }
 
     public String getValue(int resourceId, int quantity) {
         String name = resourceExtractor.getResourceName(resourceId);
         PluralRules rules = plurals.get(name);
+        if (rules == null && baseLoader != null) {
+            return baseLoader.getValue(resourceId, quantity);
+        }
         if (rules != null) {
             Plural p = rules.find(quantity);
             if (p != null) {
@@ -34,11 +43,8 @@ public class PluralResourceLoader extends XpathResourceXmlLoader implements Reso
     }
 
     @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
         PluralRules rules = new PluralRules();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
+        for (Node childNode : getItemNodes(node)) {
             String value = childNode.getTextContent();
             String quantity = childNode.getAttributes().getNamedItem("quantity").getTextContent();
             if (value.startsWith("@")) {
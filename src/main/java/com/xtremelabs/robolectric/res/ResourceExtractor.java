@@ -2,13 +2,11 @@ package com.xtremelabs.robolectric.res;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
-import java.util.Map;
 
 public class ResourceExtractor {
-    private Map<String, Integer> localResourceStringToId = new HashMap<String, Integer>();
-    private Map<String, Integer> systemResourceStringToId = new HashMap<String, Integer>();
-    private Map<Integer, String> resourceIdToString = new HashMap<Integer, String>();
+    private ResourceNameIndex localResourceStringToId = new ResourceNameIndex();
+    private ResourceNameIndex systemResourceStringToId = new ResourceNameIndex();
+    private ResourceIdMap<String> resourceIdToString = new ResourceIdMap<String>();
 
     public void addLocalRClass(Class rClass) throws Exception {
         addRClass(rClass, false);
@@ -68,18 +66,20 @@ public class ResourceExtractor {
         	return 0;
         }
         
+        // look past the prefix rather than cutting it off, since this is called for every attribute inflated
+        int offset = 0;
         if (resourceName.startsWith("@+id")) {
-            resourceName = resourceName.substring(2);
+            offset = 2;
         } else if (resourceName.startsWith("@+android:id")) {
-            resourceName = resourceName.substring(2);
+            offset = 2;
         } else if (resourceName.startsWith("@")) {
-            resourceName = resourceName.substring(1);
+            offset = 1;
         }
 
         if (isSystemResource) {
-            return systemResourceStringToId.get(resourceName);
+            return systemResourceStringToId.get(resourceName, offset);
         } else {
-            return localResourceStringToId.get(resourceName);
+            return localResourceStringToId.get(resourceName, offset);
         }
     }
 
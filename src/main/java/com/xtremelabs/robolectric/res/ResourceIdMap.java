@@ -0,0 +1,72 @@
+package com.xtremelabs.robolectric.res;
+
+/**
+ * A map from resource ids to values, kept in two flat arrays with open addressing so neither lookups nor the table
+ * itself box the ids. Null values can't be stored.
+ */
+class ResourceIdMap<V> {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[indexOf(keys, values, key)];
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public void put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("can't store a null value for " + key);
+        }
+
+        int index = indexOf(keys, values, key);
+        if (values[index] == null) {
+            size++;
+        }
+        keys[index] = key;
+        values[index] = value;
+
+        // keep it at most half full, so probe sequences stay short
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(keys, values, oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding {@code key}, or the empty slot where it would go
+     */
+    private static int indexOf(int[] keys, Object[] values, int key) {
+        int mask = keys.length - 1;
+        // ids are sequential within a resource type, so spread them before masking
+        int hash = key * 0x9E3779B9;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
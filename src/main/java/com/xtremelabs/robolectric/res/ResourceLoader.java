@@ -4,10 +4,18 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
 import java.io.*;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
+import org.w3c.dom.Document;
+
 import android.R;
 import android.content.Context;
 import android.content.res.XmlResourceParser;
@@ -25,6 +33,12 @@ import com.xtremelabs.robolectric.util.I18nException;
 import com.xtremelabs.robolectric.util.PropertiesHelper;
 
 public class ResourceLoader {
+	/**
+	 * Set this system property to {@code false} to load every resource up front, instead of each kind of resource the
+	 * first time one is asked for, and each layout the first time it's inflated.
+	 */
+	public static final String LAZY_LOADING_PROPERTY = "robolectric.lazyResources";
+
 	private static final FileFilter MENU_DIR_FILE_FILTER = new FileFilter() {
 		@Override
 		public boolean accept( File file ) {
@@ -54,18 +68,23 @@ public class ResourceLoader {
 	private MenuLoader menuLoader;
 	private XmlFileLoader xmlFileLoader;
 	private PreferenceLoader preferenceLoader;
-	private final StringResourceLoader stringResourceLoader;
-	private final PluralResourceLoader pluralResourceLoader;
-	private final StringArrayResourceLoader stringArrayResourceLoader;
+	private StringResourceLoader stringResourceLoader;
+	private PluralResourceLoader pluralResourceLoader;
+	private StringArrayResourceLoader stringArrayResourceLoader;
 	private final AttrResourceLoader attrResourceLoader;
-	private final ColorResourceLoader colorResourceLoader;
+	private ColorResourceLoader colorResourceLoader;
 	private final DrawableResourceLoader drawableResourceLoader;
 	private final RawResourceLoader rawResourceLoader;
-	private final DimenResourceLoader dimenResourceLoader;
-	private final IntegerResourceLoader integerResourceLoader;
+	private DimenResourceLoader dimenResourceLoader;
+	private IntegerResourceLoader integerResourceLoader;
 	private final BoolResourceLoader boolResourceLoader;
 	private boolean isInitialized = false;
 	private boolean strictI18n = false;
+	private final Set<ResourceCategory> loadedCategories = EnumSet.noneOf( ResourceCategory.class );
+	private String valuesQualifiers;
+	private final Map<String, ValueResourceTables> valueResourceTablesByQualifiers = new HashMap<String, ValueResourceTables>();
+	private File systemResourceDir;
+	private boolean systemResourceDirFound = false;
 	
 	private final Set<Integer> ninePatchDrawableIds = new HashSet<Integer>();
 
@@ -78,15 +97,10 @@ public class ResourceLoader {
 		resourceExtractor.addLocalRClass( rClass );
 		resourceExtractor.addSystemRClass( R.class );
 
-		stringResourceLoader = new StringResourceLoader( resourceExtractor );
-		pluralResourceLoader = new PluralResourceLoader( resourceExtractor, stringResourceLoader );
-		stringArrayResourceLoader = new StringArrayResourceLoader( resourceExtractor, stringResourceLoader );
-		colorResourceLoader = new ColorResourceLoader( resourceExtractor );
+		useValueResourceTables( new ValueResourceTables( resourceExtractor ) );
 		attrResourceLoader = new AttrResourceLoader( resourceExtractor );
 		drawableResourceLoader = new DrawableResourceLoader( resourceExtractor, resourceDir );
 		rawResourceLoader = new RawResourceLoader( resourceExtractor, resourceDir );
-		dimenResourceLoader = new DimenResourceLoader( resourceExtractor );
-		integerResourceLoader = new IntegerResourceLoader( resourceExtractor );
 		boolResourceLoader = new BoolResourceLoader( resourceExtractor );
 
 		this.resourceDir = resourceDir;
@@ -112,128 +126,254 @@ public class ResourceLoader {
 		return strictI18n;
 	}
 
-	private void init() {
+	private synchronized void init() {
 		if ( isInitialized ) {
 			return;
 		}
 		
+		if ( resourceDir != null ) {
+			viewLoader = new ViewLoader( resourceExtractor, attrResourceLoader );
+			menuLoader = new MenuLoader( resourceExtractor, attrResourceLoader );
+			preferenceLoader = new PreferenceLoader( resourceExtractor );
+			xmlFileLoader = new XmlFileLoader( resourceExtractor );
+
+			viewLoader.setStrictI18n( strictI18n );
+			menuLoader.setStrictI18n( strictI18n );
+			preferenceLoader.setStrictI18n( strictI18n );
+			xmlFileLoader.setStrictI18n( strictI18n );
+		} else {
+			viewLoader = null;
+			menuLoader = null;
+			preferenceLoader = null;
+			xmlFileLoader = null;
+		}
+		isInitialized = true;
+
+		if ( "false".equals( System.getProperty( LAZY_LOADING_PROPERTY ) ) ) {
+			load( ResourceCategory.values() );
+		} else if ( viewLoader != null ) {
+			viewLoader.loadLayoutsOnDemandFrom( resourceDir, getSystemResourceDir() );
+		}
+	}
+
+	/**
+	 * Loads whichever of {@code categories} haven't been loaded yet, parsing all of their files in one go.
+	 * Synchronized, like {@link ViewLoader#getViewNode}, since tests can look up resources from more than one thread.
+	 */
+	private synchronized void load( ResourceCategory... categories ) {
+		init();
+		if ( resourceDir == null ) {
+			return;
+		}
+
+		List<ResourceCategory> categoriesToLoad = new ArrayList<ResourceCategory>();
+		for ( ResourceCategory category : categories ) {
+			if ( !loadedCategories.contains( category ) ) {
+				categoriesToLoad.add( category );
+			}
+		}
+		if ( categoriesToLoad.isEmpty() ) {
+			return;
+		}
+
 		try {
-			if ( resourceDir != null ) {
-				viewLoader = new ViewLoader( resourceExtractor, attrResourceLoader );
-				menuLoader = new MenuLoader( resourceExtractor, attrResourceLoader );
-				preferenceLoader = new PreferenceLoader( resourceExtractor );
-				xmlFileLoader = new XmlFileLoader( resourceExtractor );
-
-				viewLoader.setStrictI18n( strictI18n );
-				menuLoader.setStrictI18n( strictI18n );
-				preferenceLoader.setStrictI18n( strictI18n );
-				xmlFileLoader.setStrictI18n( strictI18n );
-
-				File systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
-				File localValueResourceDir = getValueResourceDir( resourceDir, null, true );
-				File systemValueResourceDir = getValueResourceDir( systemResourceDir, null, false );
-				File preferenceDir = getPreferenceResourceDir( resourceDir );
-
-				loadStringResources( localValueResourceDir, systemValueResourceDir );
-				loadPluralsResources( localValueResourceDir, systemValueResourceDir );
-				loadValueResources( localValueResourceDir, systemValueResourceDir );
-				loadDimenResources( localValueResourceDir, systemValueResourceDir );
-				loadIntegerResource( localValueResourceDir, systemValueResourceDir );
-				loadViewResources( systemResourceDir, resourceDir );
-				loadMenuResources( resourceDir );
-				loadDrawableResources( resourceDir );
-				loadPreferenceResources( preferenceDir );
-				loadXmlFileResources( preferenceDir );
-				
-				listNinePatchResources(ninePatchDrawableIds, resourceDir);
-			} else {
-				viewLoader = null;
-				menuLoader = null;
-				preferenceLoader = null;
-				xmlFileLoader = null;
+			File systemResourceDir = getSystemResourceDir();
+			File localValueResourceDir = getValueResourceDir( resourceDir, null, true );
+			File systemValueResourceDir = getValueResourceDir( systemResourceDir, null, false );
+			File preferenceDir = getPreferenceResourceDir( resourceDir );
+
+			List<File> xmlResourceDirs = new ArrayList<File>();
+			for ( ResourceCategory category : categoriesToLoad ) {
+				switch ( category ) {
+					case VALUES:
+						xmlResourceDirs.add( localValueResourceDir );
+						xmlResourceDirs.add( systemValueResourceDir );
+						break;
+					case LAYOUTS:
+						xmlResourceDirs.addAll( listDirs( resourceDir, LAYOUT_DIR_FILE_FILTER ) );
+						xmlResourceDirs.addAll( listDirs( systemResourceDir, LAYOUT_DIR_FILE_FILTER ) );
+						break;
+					case MENUS:
+						xmlResourceDirs.addAll( listDirs( resourceDir, MENU_DIR_FILE_FILTER ) );
+						break;
+					case DRAWABLES:
+						xmlResourceDirs.addAll( listDirs( resourceDir, DRAWABLE_DIR_FILE_FILTER ) );
+						break;
+					case PREFERENCES:
+					case XML_FILES:
+						if ( !xmlResourceDirs.contains( preferenceDir ) ) {
+							xmlResourceDirs.add( preferenceDir );
+						}
+						break;
+				}
+			}
+			Map<File, Document> parsedDocuments = new ParallelDocumentParser().parse( xmlResourceDirs );
+
+			for ( ResourceCategory category : categoriesToLoad ) {
+				switch ( category ) {
+					case VALUES:
+						loadAllValueResources( parsedDocuments, localValueResourceDir, systemValueResourceDir );
+						valueResourceTablesByQualifiers.put( "", currentValueResourceTables() );
+						break;
+					case LAYOUTS:
+						loadViewResources( parsedDocuments, systemResourceDir, resourceDir );
+						break;
+					case MENUS:
+						loadMenuResources( parsedDocuments, resourceDir );
+						break;
+					case DRAWABLES:
+						loadDrawableResources( parsedDocuments, resourceDir );
+						break;
+					case PREFERENCES:
+						loadPreferenceResources( parsedDocuments, preferenceDir );
+						break;
+					case XML_FILES:
+						loadXmlFileResources( parsedDocuments, preferenceDir );
+						break;
+					case NINE_PATCHES:
+						listNinePatchResources( ninePatchDrawableIds, resourceDir );
+						break;
+				}
+				loadedCategories.add( category );
 			}
 		} catch ( I18nException e ) {
 			throw e;
 		} catch ( Exception e ) {
 			throw new RuntimeException( e );
 		}
-		isInitialized = true;
+
+		if ( categoriesToLoad.contains( ResourceCategory.VALUES ) && valuesQualifiers != null ) {
+			reloadValuesResouces( valuesQualifiers );
+		}
 	}
 
 	/**
-	 * Reload values resources, include String, Plurals, Dimen, Prefs, Menu
+	 * Switches to the values resources for {@code qualifiers}: String, Plurals, Dimen and so on from {@code values}, with
+	 * those from {@code values-<qualifiers>} on top. The defaults are only loaded once; each set of qualifiers just
+	 * loads its own {@code values-<qualifiers>} the first time it's used, and looks in the defaults for the rest.
 	 *
-	 * @param locale
+	 * @param qualifiers
 	 */
-	public void reloadValuesResouces( String qualifiers ) {
-		
-		File systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
-		File localValueResourceDir = getValueResourceDir( resourceDir, qualifiers, true );
-		File systemValueResourceDir = getValueResourceDir( systemResourceDir, null, false );
-		File preferenceDir = getPreferenceResourceDir( resourceDir );
-		
+	public synchronized void reloadValuesResouces( String qualifiers ) {
+		if ( !loadedCategories.contains( ResourceCategory.VALUES ) ) {
+			// they'll be loaded on top of the defaults when they're first needed
+			valuesQualifiers = qualifiers;
+			return;
+		}
+
+		String key = qualifiers == null ? "" : qualifiers;
+		ValueResourceTables valueResourceTables = valueResourceTablesByQualifiers.get( key );
+		if ( valueResourceTables == null ) {
+			valueResourceTables = loadValueResourceTables( qualifiers );
+			valueResourceTablesByQualifiers.put( key, valueResourceTables );
+		}
+		useValueResourceTables( valueResourceTables );
+	}
+
+	private ValueResourceTables loadValueResourceTables( String qualifiers ) {
+		ValueResourceTables defaultValueResourceTables = valueResourceTablesByQualifiers.get( "" );
+		File localValueResourceDir = getValueResourceDir( resourceDir, null, true );
+		File qualifiedValueResourceDir = getValueResourceDir( resourceDir, qualifiers, true );
+		if ( qualifiedValueResourceDir.equals( localValueResourceDir ) ) {
+			return defaultValueResourceTables;
+		}
+
+		ValueResourceTables valueResourceTables = new ValueResourceTables( resourceExtractor, defaultValueResourceTables );
+		ValueResourceTables previousValueResourceTables = currentValueResourceTables();
+		useValueResourceTables( valueResourceTables );
 		try {
-			loadStringResources( localValueResourceDir, systemValueResourceDir );
-			loadPluralsResources( localValueResourceDir, systemValueResourceDir );
-			loadValueResources( localValueResourceDir, systemValueResourceDir );
-			loadDimenResources( localValueResourceDir, systemValueResourceDir );
-			loadIntegerResource( localValueResourceDir, systemValueResourceDir );
-			loadMenuResources( resourceDir );
-			loadPreferenceResources( preferenceDir );
+			Map<File, Document> parsedDocuments = new ParallelDocumentParser().parse( Arrays.asList( qualifiedValueResourceDir ) );
+			loadAllValueResources( parsedDocuments, qualifiedValueResourceDir, null );
+			return valueResourceTables;
 		} catch ( Exception e ) {
+			useValueResourceTables( previousValueResourceTables );
 			throw new RuntimeException( e );
-		} 
+		}
+	}
+
+	private ValueResourceTables currentValueResourceTables() {
+		return new ValueResourceTables( stringResourceLoader, pluralResourceLoader, stringArrayResourceLoader,
+				colorResourceLoader, dimenResourceLoader, integerResourceLoader );
+	}
+
+	private void useValueResourceTables( ValueResourceTables valueResourceTables ) {
+		stringResourceLoader = valueResourceTables.stringResourceLoader;
+		pluralResourceLoader = valueResourceTables.pluralResourceLoader;
+		stringArrayResourceLoader = valueResourceTables.stringArrayResourceLoader;
+		colorResourceLoader = valueResourceTables.colorResourceLoader;
+		dimenResourceLoader = valueResourceTables.dimenResourceLoader;
+		integerResourceLoader = valueResourceTables.integerResourceLoader;
+	}
+
+	private File getSystemResourceDir() {
+		if ( !systemResourceDirFound ) {
+			systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
+			systemResourceDirFound = true;
+		}
+		return systemResourceDir;
 	}
 	
 	private File getSystemResourceDir( String pathToAndroidResources ) {
 		return pathToAndroidResources != null ? new File( pathToAndroidResources ) : null;
 	}
 
-	private void loadStringResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( this.stringResourceLoader );
+	/**
+	 * Plurals and arrays refer to strings, so every string has to be loaded before any of them. Each values file is
+	 * still only parsed once: the passes share their parsed documents.
+	 */
+	private void loadAllValueResources( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		loadStringResources( parsedDocuments, localResourceDir, systemValueResourceDir );
+		loadPluralsResources( parsedDocuments, localResourceDir, systemValueResourceDir );
+		loadValueResources( parsedDocuments, localResourceDir, systemValueResourceDir );
+		loadDimenResources( parsedDocuments, localResourceDir, systemValueResourceDir );
+		loadIntegerResource( parsedDocuments, localResourceDir, systemValueResourceDir );
+	}
+
+	private void loadStringResources( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( parsedDocuments, this.stringResourceLoader );
 		loadValueResourcesFromDirs( stringResourceDocumentLoader, localResourceDir, systemValueResourceDir );
 	}
 
-	private void loadPluralsResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( this.pluralResourceLoader );
+	private void loadPluralsResources( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( parsedDocuments, this.pluralResourceLoader );
 		loadValueResourcesFromDirs( stringResourceDocumentLoader, localResourceDir, systemValueResourceDir );
 	}
 
-	private void loadValueResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader valueResourceLoader = new DocumentLoader( stringArrayResourceLoader, colorResourceLoader,
+	private void loadValueResources( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		DocumentLoader valueResourceLoader = new DocumentLoader( parsedDocuments, stringArrayResourceLoader, colorResourceLoader,
 				attrResourceLoader );
 		loadValueResourcesFromDirs( valueResourceLoader, localResourceDir, systemValueResourceDir );
 	}
 
-	private void loadDimenResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader dimenResourceDocumentLoader = new DocumentLoader( this.dimenResourceLoader );
+	private void loadDimenResources( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		DocumentLoader dimenResourceDocumentLoader = new DocumentLoader( parsedDocuments, this.dimenResourceLoader );
 		loadValueResourcesFromDirs( dimenResourceDocumentLoader, localResourceDir, systemValueResourceDir );
 	}
 
-	private void loadIntegerResource( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader integerResourceDocumentLoader = new DocumentLoader( this.integerResourceLoader );
+	private void loadIntegerResource( Map<File, Document> parsedDocuments, File localResourceDir, File systemValueResourceDir ) throws Exception {
+		DocumentLoader integerResourceDocumentLoader = new DocumentLoader( parsedDocuments, this.integerResourceLoader );
 		loadValueResourcesFromDirs( integerResourceDocumentLoader, localResourceDir, systemValueResourceDir );
 	}
 
-	private void loadViewResources( File systemResourceDir, File xmlResourceDir ) throws Exception {
-		DocumentLoader viewDocumentLoader = new DocumentLoader( viewLoader );
+	private void loadViewResources( Map<File, Document> parsedDocuments, File systemResourceDir, File xmlResourceDir ) throws Exception {
+		DocumentLoader viewDocumentLoader = new DocumentLoader( parsedDocuments, viewLoader );
 		loadLayoutResourceXmlSubDirs( viewDocumentLoader, xmlResourceDir, false );
 		loadLayoutResourceXmlSubDirs( viewDocumentLoader, systemResourceDir, true );
 	}
 
-	private void loadMenuResources( File xmlResourceDir ) throws Exception {
-		DocumentLoader menuDocumentLoader = new DocumentLoader( menuLoader );
+	private void loadMenuResources( Map<File, Document> parsedDocuments, File xmlResourceDir ) throws Exception {
+		DocumentLoader menuDocumentLoader = new DocumentLoader( parsedDocuments, menuLoader );
 		loadMenuResourceXmlDirs( menuDocumentLoader, xmlResourceDir );
 	}
 
-	private void loadDrawableResources( File xmlResourceDir ) throws Exception {
-		DocumentLoader drawableDocumentLoader = new DocumentLoader( drawableResourceLoader );
+	private void loadDrawableResources( Map<File, Document> parsedDocuments, File xmlResourceDir ) throws Exception {
+		DocumentLoader drawableDocumentLoader = new DocumentLoader( parsedDocuments, drawableResourceLoader );
 		loadDrawableResourceXmlDirs( drawableDocumentLoader, xmlResourceDir );
 	}
 
-	private void loadPreferenceResources( File xmlResourceDir ) throws Exception {
+	private void loadPreferenceResources( Map<File, Document> parsedDocuments, File xmlResourceDir ) throws Exception {
 		if ( xmlResourceDir.exists() ) {
-			DocumentLoader preferenceDocumentLoader = new DocumentLoader( preferenceLoader );
+			DocumentLoader preferenceDocumentLoader = new DocumentLoader( parsedDocuments, preferenceLoader );
 			preferenceDocumentLoader.loadResourceXmlDir( xmlResourceDir );
 		}
 	}
@@ -241,10 +381,10 @@ public class ResourceLoader {
 	/**
 	 * All the Xml files should be loaded. 
 	 */
-	private void loadXmlFileResources( File xmlResourceDir ) throws Exception {
+	private void loadXmlFileResources( Map<File, Document> parsedDocuments, File xmlResourceDir ) throws Exception {
 		if ( xmlResourceDir.exists() ) {
 			DocumentLoader xmlFileDocumentLoader = 
-					new DocumentLoader( xmlFileLoader );
+					new DocumentLoader( parsedDocuments, xmlFileLoader );
 			xmlFileDocumentLoader.loadResourceXmlDir( xmlResourceDir );
 		}
 	}
@@ -268,6 +408,11 @@ public class ResourceLoader {
 		}
 	}
 
+	private List<File> listDirs( File xmlResourceDir, FileFilter dirFileFilter ) {
+		File[] dirs = xmlResourceDir != null ? xmlResourceDir.listFiles( dirFileFilter ) : null;
+		return dirs != null ? Arrays.asList( dirs ) : new ArrayList<File>();
+	}
+
 	private void loadValueResourcesFromDirs( DocumentLoader documentLoader, File localValueResourceDir,
 			File systemValueResourceDir ) throws Exception {
 		loadValueResourcesFromDir( documentLoader, localValueResourceDir );
@@ -428,61 +573,62 @@ public class ResourceLoader {
 	}
 
 	public View inflateView( Context context, int resource, ViewGroup viewGroup ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return viewLoader.inflateView( context, resource, viewGroup );
 	}
 
 	public int getColorValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return colorResourceLoader.getValue( id );
 	}
 
 	public String getStringValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return stringResourceLoader.getValue( id );
 	}
 
 	public String getPluralStringValue( int id, int quantity ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return pluralResourceLoader.getValue( id, quantity );
 	}
 
 	public float getDimenValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return dimenResourceLoader.getValue( id );
 	}
 
 	public int getIntegerValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return integerResourceLoader.getValue( id );
 	}
 	
 	public boolean getBooleanValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return boolResourceLoader.getValue( id );
 	}
 	
 	public XmlResourceParser getXml( int id ) {
-		init();
+		load( ResourceCategory.XML_FILES );
 		return xmlFileLoader.getXml( id );
 	}
 
 	public boolean isDrawableXml( int resourceId ) {
-		init();
+		load( ResourceCategory.DRAWABLES );
 		return drawableResourceLoader.isXml( resourceId );
 	}
 
     public boolean isAnimatableXml( int resourceId ) {
-        init();
+        load( ResourceCategory.DRAWABLES );
         return drawableResourceLoader.isAnimationDrawable( resourceId );
     }
 
 	public int[] getDrawableIds( int resourceId ) {
-		init();
+		load( ResourceCategory.DRAWABLES );
 		return drawableResourceLoader.getDrawableIds( resourceId );
 	}
 
 	public Drawable getXmlDrawable( int resourceId ) {
+		load( ResourceCategory.DRAWABLES );
 		return drawableResourceLoader.getXmlDrawable( resourceId );
 	}
 
@@ -527,6 +673,7 @@ public class ResourceLoader {
 	}
 	
 	public boolean isNinePatchDrawable(int drawableResourceId) {
+		load( ResourceCategory.NINE_PATCHES );
 		return ninePatchDrawableIds.contains(drawableResourceId);
 	}
 	
@@ -560,17 +707,17 @@ public class ResourceLoader {
 	}
 
 	public String[] getStringArrayValue( int id ) {
-		init();
+		load( ResourceCategory.VALUES );
 		return stringArrayResourceLoader.getArrayValue( id );
 	}
 
 	public void inflateMenu( Context context, int resource, Menu root ) {
-		init();
+		load( ResourceCategory.VALUES, ResourceCategory.MENUS );
 		menuLoader.inflateMenu( context, resource, root );
 	}
 
 	public PreferenceScreen inflatePreferences( Context context, int resourceId ) {
-		init();
+		load( ResourceCategory.PREFERENCES );
 		return preferenceLoader.inflatePreferences( context, resourceId );
 	}
 
@@ -592,11 +739,59 @@ public class ResourceLoader {
 	}
 
 	public ViewLoader.ViewNode getLayoutViewNode( String layoutName ) {
-		return viewLoader.viewNodesByLayoutName.get( layoutName );
+		init();
+		return viewLoader.getViewNode( layoutName );
 	}
 
 	public void setLayoutQualifierSearchPath( String... locations ) {
 		init();
 		viewLoader.setLayoutQualifierSearchPath( locations );
 	}
+
+	private enum ResourceCategory {
+		VALUES, LAYOUTS, MENUS, DRAWABLES, PREFERENCES, XML_FILES, NINE_PATCHES
+	}
+
+	/**
+	 * The loaders holding the values for one set of qualifiers. Attrs aren't among them: they're shared by every set.
+	 * Those for a qualified set only hold what its {@code values-<qualifiers>} defines, and fall back on the defaults.
+	 */
+	private static class ValueResourceTables {
+		final StringResourceLoader stringResourceLoader;
+		final PluralResourceLoader pluralResourceLoader;
+		final StringArrayResourceLoader stringArrayResourceLoader;
+		final ColorResourceLoader colorResourceLoader;
+		final DimenResourceLoader dimenResourceLoader;
+		final IntegerResourceLoader integerResourceLoader;
+
+		ValueResourceTables( ResourceExtractor resourceExtractor ) {
+			stringResourceLoader = new StringResourceLoader( resourceExtractor );
+			pluralResourceLoader = new PluralResourceLoader( resourceExtractor, stringResourceLoader );
+			stringArrayResourceLoader = new StringArrayResourceLoader( resourceExtractor, stringResourceLoader );
+			colorResourceLoader = new ColorResourceLoader( resourceExtractor );
+			dimenResourceLoader = new DimenResourceLoader( resourceExtractor );
+			integerResourceLoader = new IntegerResourceLoader( resourceExtractor );
+		}
+
+		ValueResourceTables( ResourceExtractor resourceExtractor, ValueResourceTables defaults ) {
+			stringResourceLoader = new StringResourceLoader( resourceExtractor, defaults.stringResourceLoader );
+			pluralResourceLoader = new PluralResourceLoader( resourceExtractor, stringResourceLoader, defaults.pluralResourceLoader );
+			stringArrayResourceLoader = new StringArrayResourceLoader( resourceExtractor, stringResourceLoader,
+					defaults.stringArrayResourceLoader );
+			colorResourceLoader = new ColorResourceLoader( resourceExtractor, defaults.colorResourceLoader );
+			dimenResourceLoader = new DimenResourceLoader( resourceExtractor, defaults.dimenResourceLoader );
+			integerResourceLoader = new IntegerResourceLoader( resourceExtractor, defaults.integerResourceLoader );
+		}
+
+		ValueResourceTables( StringResourceLoader stringResourceLoader, PluralResourceLoader pluralResourceLoader,
+				StringArrayResourceLoader stringArrayResourceLoader, ColorResourceLoader colorResourceLoader,
+				DimenResourceLoader dimenResourceLoader, IntegerResourceLoader integerResourceLoader ) {
+			this.stringResourceLoader = stringResourceLoader;
+			this.pluralResourceLoader = pluralResourceLoader;
+			this.stringArrayResourceLoader = stringArrayResourceLoader;
+			this.colorResourceLoader = colorResourceLoader;
+			this.dimenResourceLoader = dimenResourceLoader;
+			this.integerResourceLoader = integerResourceLoader;
+		}
+	}
 }
@@ -0,0 +1,89 @@
+package com.xtremelabs.robolectric.res;
+
+/**
+ * Resource names like {@code layout/main} or {@code android:id/text1}, mapped to their ids. Names can be looked up
+ * from part way into a string, so references like {@code @+id/title} don't have to be cut down to a new string first.
+ */
+class ResourceNameIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private Integer[] ids = new Integer[INITIAL_CAPACITY];
+    private int size;
+
+    public Integer get(String name) {
+        return get(name, 0);
+    }
+
+    /**
+     * @return the id of the resource named by {@code string} from {@code offset} on, or null if there isn't one
+     */
+    public Integer get(String string, int offset) {
+        return ids[indexOf(names, string, offset)];
+    }
+
+    public void put(String name, int id) {
+        int index = indexOf(names, name, 0);
+        if (names[index] == null) {
+            size++;
+        }
+        names[index] = name;
+        // boxed once here, so lookups hand back the same Integer every time
+        ids[index] = id;
+
+        if (size * 2 > names.length) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] oldNames = names;
+        Integer[] oldIds = ids;
+        names = new String[oldNames.length * 2];
+        ids = new Integer[oldIds.length * 2];
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int index = indexOf(names, oldNames[i], 0);
+                names[index] = oldNames[i];
+                ids[index] = oldIds[i];
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding the name in {@code string} from {@code offset} on, or the empty slot where it would go
+     */
+    private static int indexOf(String[] names, String string, int offset) {
+        int length = string.length() - offset;
+        int mask = names.length - 1;
+        int index = spread(hashCode(string, offset)) & mask;
+        String name;
+        while ((name = names[index]) != null
+                && !(name.length() == length && name.regionMatches(0, string, offset, length))) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * @return what {@code string.substring(offset).hashCode()} would, without the substring
+     */
+    private static int hashCode(String string, int offset) {
+        if (offset == 0) {
+            return string.hashCode();
+        }
+        int hash = 0;
+        for (int i = offset; i < string.length(); i++) {
+            hash = 31 * hash + string.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
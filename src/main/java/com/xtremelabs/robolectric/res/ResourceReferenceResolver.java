@@ -9,13 +9,27 @@ class ResourceReferenceResolver<T> {
     private Map<String, T> attributeNamesToValues = new HashMap<String, T>();
     private Map<String, List<String>> unresolvedReferences = new HashMap<String, List<String>>();
     private String prefix;
+    private final ResourceReferenceResolver<T> fallback;
 
     ResourceReferenceResolver(String prefix) {
+        this(prefix, null);
+    }
+
+    /**
+     * @param fallback looked in for anything that isn't found here, so this resolver only needs to hold the values
+     *                 that differ from it
+     */
+    ResourceReferenceResolver(String prefix, ResourceReferenceResolver<T> fallback) {
         this.prefix = prefix;
+        this.fallback = fallback;
     }
 
     public T getValue(String resourceName) {
-        return attributeNamesToValues.get(resourceName);
+        T value = attributeNamesToValues.get(resourceName);
+        if (value == null && fallback != null) {
+            return fallback.getValue(resourceName);
+        }
+        return value;
     }
 
     public void processResource(String name, String rawValue, ResourceValueConverter loader, boolean isSystem) {
@@ -56,7 +70,7 @@ class ResourceReferenceResolver<T> {
 
     private void addAttributeReference(String rawValue, String valuePointer) {
         String attributeName = rawValue.substring(1);
-        T value = attributeNamesToValues.get(attributeName);
+        T value = getValue(attributeName);
         if (value == null) {
             addUnresolvedReference(valuePointer, attributeName);
         } else {
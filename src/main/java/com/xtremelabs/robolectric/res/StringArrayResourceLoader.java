@@ -1,12 +1,8 @@
 package com.xtremelabs.robolectric.res;
 
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,24 +11,34 @@ import java.util.Map;
 public class StringArrayResourceLoader extends XpathResourceXmlLoader {
     Map<String, String[]> stringArrayValues = new HashMap<String, String[]>();
     private StringResourceLoader stringResourceLoader;
+    private final StringArrayResourceLoader baseLoader;
 
     public StringArrayResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader) {
+        this(resourceExtractor, stringResourceLoader, null);
+    }
+
+    /**
+     * @param baseLoader answers for any string array that isn't loaded into this one
+     */
+    public StringArrayResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader,
+                                     StringArrayResourceLoader baseLoader) {
         super(resourceExtractor, "/resources/string-array");
         this.stringResourceLoader = stringResourceLoader;
+        this.baseLoader = baseLoader;
     }
 
     public String[] getArrayValue(int resourceId) {
         String resourceName = resourceExtractor.getResourceName(resourceId);
-        return stringArrayValues.get(resourceName);
+        String[] arrayValue = stringArrayValues.get(resourceName);
+        if (arrayValue == null && baseLoader != null) {
+            return baseLoader.getArrayValue(resourceId);
+        }
+        return arrayValue;
     }
 
     @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
         List<String> arrayValues = new ArrayList<String>();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-
+        for (Node childNode : getItemNodes(node)) {
             String value = childNode.getTextContent();
             if (value.startsWith("@")) {
                 value = value.substring(1);
@@ -3,10 +3,18 @@ package com.xtremelabs.robolectric.res;
 import org.w3c.dom.Node;
 
 public class StringResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
-    private ResourceReferenceResolver<String> stringResolver = new ResourceReferenceResolver<String>("string");
+    private final ResourceReferenceResolver<String> stringResolver;
 
     public StringResourceLoader(ResourceExtractor resourceExtractor) {
+        this(resourceExtractor, null);
+    }
+
+    /**
+     * @param baseLoader answers for any string that isn't loaded into this one
+     */
+    public StringResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader baseLoader) {
         super(resourceExtractor, "/resources/string");
+        stringResolver = new ResourceReferenceResolver<String>("string", baseLoader == null ? null : baseLoader.stringResolver);
     }
 
     public String getValue(int resourceId) {
@@ -27,6 +27,10 @@ public class ViewLoader extends XmlLoader {
     protected Map<String, ViewNode> viewNodesByLayoutName = new HashMap<String, ViewNode>();
     private AttrResourceLoader attrResourceLoader;
     private List<String> qualifierSearchPath = new ArrayList<String>();
+    private File localResourceDir;
+    private File systemResourceDir;
+    private final Set<String> layoutNamesLookedUp = new HashSet<String>();
+    private volatile Method onFinishInflate;
 
     public ViewLoader(ResourceExtractor resourceExtractor, AttrResourceLoader attrResourceLoader) {
         super(resourceExtractor);
@@ -35,24 +39,17 @@ public class ViewLoader extends XmlLoader {
 
     @Override
     protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        ViewNode topLevelNode = new ViewNode("top-level", new HashMap<String, String>(), isSystem);
-        processChildren(document.getChildNodes(), topLevelNode);
+        ViewNode topLevelNode = processNode("top-level", document, isSystem);
         String layoutName = xmlFile.getParentFile().getName() + "/" + xmlFile.getName().replace(".xml", "");
         if (isSystem) {
             layoutName = "android:" + layoutName;
         }
-        viewNodesByLayoutName.put(layoutName, topLevelNode.getChildren().get(0));
-    }
-
-    private void processChildren(NodeList childNodes, ViewNode parent) {
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            processNode(node, parent);
+        synchronized (this) {
+            viewNodesByLayoutName.put(layoutName, topLevelNode.getChildren().get(0));
         }
     }
 
-    private void processNode(Node node, ViewNode parent) {
-        String name = node.getNodeName();
+    private ViewNode processNode(String name, Node node, boolean isSystem) {
         NamedNodeMap attributes = node.getAttributes();
         Map<String, String> attrMap = new HashMap<String, String>();
         if (attributes != null) {
@@ -63,15 +60,20 @@ public class ViewLoader extends XmlLoader {
             }
         }
 
-        if (name.equals("requestFocus")) {
-            parent.attributes.put("android:focus", "true");
-            parent.requestFocusOverride = true;
-        } else if (!name.startsWith("#")) {
-            ViewNode viewNode = new ViewNode(name, attrMap, parent.isSystem);
-            if (parent != null) parent.addChild(viewNode);
-
-            processChildren(node.getChildNodes(), viewNode);
+        List<ViewNode> children = new ArrayList<ViewNode>();
+        boolean requestFocusOverride = false;
+        NodeList childNodes = node.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node childNode = childNodes.item(i);
+            String childName = childNode.getNodeName();
+            if (childName.equals("requestFocus")) {
+                attrMap.put("android:focus", "true");
+                requestFocusOverride = true;
+            } else if (!childName.startsWith("#")) {
+                children.add(processNode(childName, childNode, isSystem));
+            }
         }
+        return new ViewNode(name, attrMap, children, requestFocusOverride, isSystem);
     }
 
     public View inflateView(Context context, String key) {
@@ -92,14 +94,7 @@ public class ViewLoader extends XmlLoader {
             throw new RuntimeException("Could not find layout " + layoutName);
         }
         try {
-            if (attributes != null) {
-                for (Map.Entry<String, String> entry : attributes.entrySet()) {
-                    if (!entry.getKey().equals("layout")) {
-                        viewNode.attributes.put(entry.getKey(), entry.getValue());
-                    }
-                }
-            }
-            return viewNode.inflate(context, parent);
+            return viewNode.inflate(context, parent, attributes);
         } catch (I18nException e) {
             throw e;
         } catch (Exception e) {
@@ -111,46 +106,105 @@ public class ViewLoader extends XmlLoader {
         if (layoutName.startsWith("layout/") && !qualifierSearchPath.isEmpty()) {
             String rawLayoutName = layoutName.substring("layout/".length());
             for (String location : qualifierSearchPath) {
-                ViewNode foundNode = viewNodesByLayoutName.get("layout-" + location + "/" + rawLayoutName);
+                ViewNode foundNode = getViewNode("layout-" + location + "/" + rawLayoutName);
                 if (foundNode != null) {
                     return foundNode;
                 }
             }
         }
-        return viewNodesByLayoutName.get(layoutName);
+        return getViewNode(layoutName);
+    }
+
+    synchronized ViewNode getViewNode(String layoutName) {
+        ViewNode viewNode = viewNodesByLayoutName.get(layoutName);
+        if (viewNode == null && localResourceDir != null && !layoutNamesLookedUp.contains(layoutName)) {
+            loadLayout(layoutName);
+            layoutNamesLookedUp.add(layoutName);
+            viewNode = viewNodesByLayoutName.get(layoutName);
+        }
+        return viewNode;
+    }
+
+    private void loadLayout(String layoutName) {
+        boolean isSystem = layoutName.startsWith("android:");
+        File resourceDir = isSystem ? systemResourceDir : localResourceDir;
+        File xmlFile = new File(resourceDir, (isSystem ? layoutName.substring("android:".length()) : layoutName) + ".xml");
+        if (!xmlFile.isFile()) {
+            return;
+        }
+
+        try {
+            new DocumentLoader(this).loadResourceXmlFile(xmlFile, isSystem);
+        } catch (I18nException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("error loading " + xmlFile, e);
+        }
+    }
+
+    /**
+     * Instead of being loaded up front, layouts will be read from these resource directories the first time they're
+     * looked up.
+     */
+    public void loadLayoutsOnDemandFrom(File localResourceDir, File systemResourceDir) {
+        this.localResourceDir = localResourceDir;
+        this.systemResourceDir = systemResourceDir;
     }
 
     public void setLayoutQualifierSearchPath(String... locations) {
         qualifierSearchPath = Arrays.asList(locations);
     }
 
+    private static final int CONTEXT_AND_ATTRIBUTE_SET = 0;
+    private static final int CONTEXT = 1;
+    private static final int CONTEXT_AND_STRING = 2;
+
+    /**
+     * A parsed layout element. Nodes are never changed once parsed, so a layout can be inflated by several threads at
+     * once; attributes given by an {@code <include>} are laid over the included layout's root as it's inflated.
+     */
     public class ViewNode {
-        private String name;
+        private final String name;
         private final Map<String, String> attributes;
+        private final List<ViewNode> children;
+        private final boolean requestFocusOverride;
+        final boolean isSystem;
+        // each inflation gets its own TestAttributeSet over these, so views can't see each other's changes
+        private final TestAttributeSet.SplitAttributes splitAttributes;
+
+        // worked out the first time the node is inflated, then reused
+        private volatile Constructor<? extends View> viewConstructor;
+        private int viewConstructorArguments;
+
+        ViewNode(String name, Map<String, String> attributes, boolean isSystem) {
+            this(name, attributes, new ArrayList<ViewNode>(), false, isSystem);
+        }
 
-        private List<ViewNode> children = new ArrayList<ViewNode>();
-        boolean requestFocusOverride = false;
-        boolean isSystem = false;
-
-        public ViewNode(String name, Map<String, String> attributes, boolean isSystem) {
+        ViewNode(String name, Map<String, String> attributes, List<ViewNode> children, boolean requestFocusOverride, boolean isSystem) {
             this.name = name;
-            this.attributes = attributes;
+            this.attributes = Collections.unmodifiableMap(attributes);
+            this.children = Collections.unmodifiableList(children);
+            this.requestFocusOverride = requestFocusOverride;
             this.isSystem = isSystem;
+            this.splitAttributes = new TestAttributeSet.SplitAttributes(this.attributes, isSystem);
         }
 
         public List<ViewNode> getChildren() {
             return children;
         }
 
-        public void addChild(ViewNode viewNode) {
-            children.add(viewNode);
+        public View inflate(Context context, View parent) throws Exception {
+            return inflate(context, parent, null);
         }
 
-        public View inflate(Context context, View parent) throws Exception {
-            View view = create(context, (ViewGroup) parent);
+        /**
+         * @param includeAttributes the attributes of the {@code <include>} this node is the root of a layout for, or null
+         */
+        View inflate(Context context, View parent, Map<String, String> includeAttributes) throws Exception {
+            View view = create(context, (ViewGroup) parent, includeAttributes);
 
             for (ViewNode child : children) {
-                child.inflate(context, view);
+                child.inflate(context, view, null);
             }
 
             invokeOnFinishInflate(view);
@@ -158,12 +212,15 @@ public class ViewLoader extends XmlLoader {
         }
 
         private void invokeOnFinishInflate(View view) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-            Method onFinishInflate = View.class.getDeclaredMethod("onFinishInflate");
-            onFinishInflate.setAccessible(true);
+            if (onFinishInflate == null) {
+                Method method = View.class.getDeclaredMethod("onFinishInflate");
+                method.setAccessible(true);
+                onFinishInflate = method;
+            }
             onFinishInflate.invoke(view);
         }
 
-        private View create(Context context, ViewGroup parent) throws Exception {
+        private View create(Context context, ViewGroup parent, Map<String, String> includeAttributes) throws Exception {
             if (name.equals("include")) {
                 String layout = attributes.get("layout");
                 View view = inflateView(context, layout.substring(1), attributes, parent);
@@ -171,19 +228,20 @@ public class ViewLoader extends XmlLoader {
             } else if (name.equals("merge")) {
                 return parent;
             } else if (name.equals("fragment")) {
-                View fragment = constructFragment(context);
+                View fragment = constructFragment(context, includeAttributes);
                 addToParent(parent, fragment);
                 return fragment;
             } else {
                 applyFocusOverride(parent);
-                View view = constructView(context);
+                View view = constructView(context, includeAttributes);
                 addToParent(parent, view);
                 shadowOf(view).applyFocus();
                 return view;
             }
         }
 
-        private FrameLayout constructFragment(Context context) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        private FrameLayout constructFragment(Context context, Map<String, String> includeAttributes) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+            Map<String, String> attributes = withIncludeAttributes(includeAttributes);
             TestAttributeSet attributeSet = new TestAttributeSet(attributes, resourceExtractor, attrResourceLoader, View.class, isSystem);
             if (strictI18n) {
                 attributeSet.validateStrictI18n();
@@ -218,21 +276,64 @@ public class ViewLoader extends XmlLoader {
             }
         }
 
-        private View constructView(Context context) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        private View constructView(Context context, Map<String, String> includeAttributes) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+            Constructor<? extends View> viewConstructor = this.viewConstructor;
+            if (viewConstructor == null) {
+                viewConstructor = findViewConstructor();
+            }
+
+            TestAttributeSet attributeSet;
+            if (includeAttributes != null) {
+                attributeSet = new TestAttributeSet(withIncludeAttributes(includeAttributes), resourceExtractor, attrResourceLoader, viewConstructor.getDeclaringClass(), isSystem);
+            } else {
+                attributeSet = new TestAttributeSet(splitAttributes, resourceExtractor, attrResourceLoader, viewConstructor.getDeclaringClass());
+            }
+            if (strictI18n) {
+                attributeSet.validateStrictI18n();
+            }
+
+            switch (viewConstructorArguments) {
+                case CONTEXT_AND_ATTRIBUTE_SET:
+                    return viewConstructor.newInstance(context, attributeSet);
+                case CONTEXT:
+                    return viewConstructor.newInstance(context);
+                default:
+                    return viewConstructor.newInstance(context, "");
+            }
+        }
+
+        private Constructor<? extends View> findViewConstructor() throws NoSuchMethodException {
             Class<? extends View> clazz = pickViewClass();
+            Constructor<? extends View> constructor;
             try {
-                TestAttributeSet attributeSet = new TestAttributeSet(attributes, resourceExtractor, attrResourceLoader, clazz, isSystem);
-                if (strictI18n) {
-                    attributeSet.validateStrictI18n();
-                }
-                return ((Constructor<? extends View>) clazz.getConstructor(Context.class, AttributeSet.class)).newInstance(context, attributeSet);
+                constructor = clazz.getConstructor(Context.class, AttributeSet.class);
+                viewConstructorArguments = CONTEXT_AND_ATTRIBUTE_SET;
             } catch (NoSuchMethodException e) {
                 try {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class)).newInstance(context);
+                    constructor = clazz.getConstructor(Context.class);
+                    viewConstructorArguments = CONTEXT;
                 } catch (NoSuchMethodException e1) {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class, String.class)).newInstance(context, "");
+                    constructor = clazz.getConstructor(Context.class, String.class);
+                    viewConstructorArguments = CONTEXT_AND_STRING;
+                }
+            }
+            // published after viewConstructorArguments, which is read only once this has been seen
+            viewConstructor = constructor;
+            return constructor;
+        }
+
+        private Map<String, String> withIncludeAttributes(Map<String, String> includeAttributes) {
+            if (includeAttributes == null) {
+                return attributes;
+            }
+
+            Map<String, String> attributes = new HashMap<String, String>(this.attributes);
+            for (Map.Entry<String, String> entry : includeAttributes.entrySet()) {
+                if (!entry.getKey().equals("layout")) {
+                    attributes.put(entry.getKey(), entry.getValue());
                 }
             }
+            return attributes;
         }
 
         private Class<? extends View> pickViewClass() {
@@ -9,18 +9,23 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class XpathResourceXmlLoader extends XmlLoader {
-    private String expression;
+    private final XPathExpression xPathExpression;
 
     public XpathResourceXmlLoader(ResourceExtractor resourceExtractor, String expression) {
         super(resourceExtractor);
-        this.expression = expression;
+        try {
+            xPathExpression = XPathFactory.newInstance().newXPath().compile(expression);
+        } catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        XPathExpression stringsXPath = XPathFactory.newInstance().newXPath().compile(expression);
-        NodeList nodes = (NodeList) stringsXPath.evaluate(document, XPathConstants.NODESET);
+        NodeList nodes = (NodeList) xPathExpression.evaluate(document, XPathConstants.NODESET);
         for (int i = 0; i < nodes.getLength(); i++) {
             Node node = nodes.item(i);
             String name = node.getAttributes().getNamedItem("name").getNodeValue();
@@ -29,4 +34,17 @@ public abstract class XpathResourceXmlLoader extends XmlLoader {
     }
 
     protected abstract void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException;
+
+    /**
+     * @return the {@code <item>} elements directly under {@code node}, as the XPath {@code item} would select them
+     */
+    protected List<Node> getItemNodes(Node node) {
+        List<Node> itemNodes = new ArrayList<Node>();
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && "item".equals(child.getNodeName())) {
+                itemNodes.add(child);
+            }
+        }
+        return itemNodes;
+    }
 }
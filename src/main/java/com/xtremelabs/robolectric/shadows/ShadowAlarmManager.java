@@ -5,6 +5,8 @@ import android.app.PendingIntent;
 import android.content.Intent;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.util.Scheduler;
+import com.xtremelabs.robolectric.util.VirtualClock;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,13 +14,15 @@ import java.util.List;
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
 /**
- * Shadows the {@code android.app.AlarmManager} class.
+ * Shadows the {@code android.app.AlarmManager} class. Alarms go off, sending their {@code PendingIntent}s, when the
+ * {@link VirtualClock} is advanced past their trigger time.
  */
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(AlarmManager.class)
 public class ShadowAlarmManager {
 
     private List<ScheduledAlarm> scheduledAlarms = new ArrayList<ScheduledAlarm>();
+    private Scheduler alarmScheduler = newAlarmScheduler();
 
     @Implementation
     public void set(int type, long triggerAtTime, PendingIntent operation) {
@@ -36,10 +40,49 @@ public class ShadowAlarmManager {
 			Intent scheduledIntent = shadowOf(scheduledAlarm.operation).getSavedIntent();
 			if (scheduledIntent.filterEquals(intent)) {
 				scheduledAlarms.remove(scheduledAlarm);
+				alarmScheduler.remove(scheduledAlarm.trigger);
 				break;
 			}
 		}
-		scheduledAlarms.add(new ScheduledAlarm(type, triggerAtTime, interval, operation));
+		ScheduledAlarm scheduledAlarm = new ScheduledAlarm(type, triggerAtTime, interval, operation);
+		scheduledAlarms.add(scheduledAlarm);
+		schedule(scheduledAlarm);
+	}
+
+	private static Scheduler newAlarmScheduler() {
+		Scheduler scheduler = new Scheduler(ShadowSystemClock.getVirtualClock());
+		// alarms only go off as the clock is advanced, never as they're set
+		scheduler.pause();
+		return scheduler;
+	}
+
+	private void schedule(ScheduledAlarm scheduledAlarm) {
+		alarmScheduler.postDelayed(scheduledAlarm.trigger, scheduledAlarm.triggerAtTime - now(scheduledAlarm.type));
+	}
+
+	private long now(int type) {
+		VirtualClock clock = alarmScheduler.getClock();
+		if (type == AlarmManager.RTC || type == AlarmManager.RTC_WAKEUP) {
+			return clock.currentTimeMillis();
+		}
+		return clock.getCurrentTime();
+	}
+
+	private void goOff(ScheduledAlarm scheduledAlarm) {
+		if (scheduledAlarm.interval > 0) {
+			// like the real thing, a repeating alarm that's fallen behind goes off once and then gets back in step
+			long intervalsPassed = (now(scheduledAlarm.type) - scheduledAlarm.triggerAtTime) / scheduledAlarm.interval;
+			scheduledAlarm.triggerAtTime += (intervalsPassed + 1) * scheduledAlarm.interval;
+			schedule(scheduledAlarm);
+		} else {
+			scheduledAlarms.remove(scheduledAlarm);
+		}
+
+		try {
+			scheduledAlarm.operation.send();
+		} catch (PendingIntent.CanceledException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -53,7 +96,9 @@ public class ShadowAlarmManager {
         if (scheduledAlarms.isEmpty()) {
             return null;
         } else {
-            return scheduledAlarms.remove(0);
+            ScheduledAlarm scheduledAlarm = scheduledAlarms.remove(0);
+            alarmScheduler.remove(scheduledAlarm.trigger);
+            return scheduledAlarm;
         }
     }
 
@@ -83,6 +128,7 @@ public class ShadowAlarmManager {
             final Intent alarmIntent = shadowOf(scheduledAlarm.operation).getSavedIntent();
             if (intentTypeToRemove.filterEquals(alarmIntent)) {
                 scheduledAlarms.remove(scheduledAlarm);
+                alarmScheduler.remove(scheduledAlarm.trigger);
             }
         }
     }
@@ -97,6 +143,13 @@ public class ShadowAlarmManager {
         public long interval;
         public PendingIntent operation;
 
+        private final Runnable trigger = new Runnable() {
+            @Override
+            public void run() {
+                goOff(ScheduledAlarm.this);
+            }
+        };
+
         public ScheduledAlarm(int type, long triggerAtTime, PendingIntent operation) {
             this(type, triggerAtTime, 0, operation);
         }
@@ -21,6 +21,7 @@ import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
 import com.xtremelabs.robolectric.res.ResourceLoader;
 import com.xtremelabs.robolectric.tester.org.apache.http.FakeHttpLayer;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 import com.xtremelabs.robolectric.util.Scheduler;
 
 import java.util.ArrayList;
@@ -81,7 +82,8 @@ public class ShadowApplication extends ShadowContextWrapper {
     private Map<String, Intent> stickyIntents = new HashMap<String, Intent>();
     private FakeHttpLayer fakeHttpLayer = new FakeHttpLayer();
     private Looper mainLooper = ShadowLooper.myLooper();
-    private Scheduler backgroundScheduler = new Scheduler();
+    private Scheduler backgroundScheduler = new Scheduler(ShadowSystemClock.getVirtualClock());
+    private BackgroundThreadPool backgroundThreadPool = BackgroundThreadPool.fromSystemProperties();
     private Map<String, Map<String, Object>> sharedPreferenceMap = new HashMap<String, Map<String, Object>>();
     private ArrayList<Toast> shownToasts = new ArrayList<Toast>();
     private PowerManager.WakeLock latestWakeLock;
@@ -122,6 +124,38 @@ public class ShadowApplication extends ShadowContextWrapper {
         return backgroundScheduler;
     }
 
+    /**
+     * Non-Android accessor.
+     *
+     * @return the pool background work runs on, or null if it runs on the background scheduler
+     */
+    public BackgroundThreadPool getBackgroundThreadPool() {
+        return backgroundThreadPool;
+    }
+
+    /**
+     * Non-Android accessor. Runs background work, such as {@code AsyncTask}s, on a pool of {@code threadCount} real
+     * threads, or back on the background scheduler if {@code threadCount} is 0.
+     */
+    public void setBackgroundThreadCount(int threadCount) {
+        if (backgroundThreadPool != null) {
+            backgroundThreadPool.waitUntilIdle();
+        }
+        backgroundThreadPool = threadCount > 0 ? new BackgroundThreadPool(threadCount) : null;
+    }
+
+    /**
+     * Non-Android accessor. Hands {@code runnable} to the background thread pool if there is one, or else posts it to
+     * the background scheduler.
+     */
+    public void runInBackground(Runnable runnable) {
+        if (backgroundThreadPool != null) {
+            backgroundThreadPool.execute(runnable);
+        } else {
+            backgroundScheduler.post(runnable);
+        }
+    }
+
     @Override
     @Implementation
     public Context getApplicationContext() {
@@ -1,17 +1,30 @@
 package com.xtremelabs.robolectric.shadows;
 
+import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.util.Scheduler;
 
 import android.os.CountDownTimer;
 
+/**
+ * Shadow for {@code CountDownTimer} that ticks on the UI thread scheduler, so a started timer counts down as the
+ * virtual clock is advanced.
+ */
 @Implements(CountDownTimer.class)
 public class ShadowCountDownTimer {
 
     private boolean started;
     private long countDownInterval;
     private long millisInFuture;
+    private long stopTime;
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            onTick();
+        }
+    };
 
     @RealObject CountDownTimer countDownTimer;
 
@@ -24,6 +37,10 @@ public class ShadowCountDownTimer {
     @Implementation
     public final synchronized CountDownTimer start() {
         started = true;
+        Scheduler scheduler = Robolectric.getUiThreadScheduler();
+        scheduler.remove(tick);
+        stopTime = scheduler.getCurrentTime() + millisInFuture;
+        scheduler.post(tick);
         return countDownTimer;
     }
 
@@ -31,6 +48,23 @@ public class ShadowCountDownTimer {
     @Implementation
     public final void cancel() {
         started = false;
+        Robolectric.getUiThreadScheduler().remove(tick);
+    }
+
+    private void onTick() {
+        Scheduler scheduler = Robolectric.getUiThreadScheduler();
+        long millisLeft = stopTime - scheduler.getCurrentTime();
+        if (millisLeft <= 0) {
+            // cleared first, so onFinish() can start the timer again
+            started = false;
+            countDownTimer.onFinish();
+        } else if (millisLeft < countDownInterval) {
+            // no tick, just wait until the end
+            scheduler.postDelayed(tick, millisLeft);
+        } else {
+            countDownTimer.onTick(millisLeft);
+            scheduler.postDelayed(tick, countDownInterval);
+        }
     }
 
 
@@ -18,7 +18,7 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 @Implements(Looper.class)
 public class ShadowLooper {
     private static ThreadLocal<Looper> looperForThread = makeThreadLocalLoopers();
-    private Scheduler scheduler = new Scheduler();
+    private Scheduler scheduler = new Scheduler(ShadowSystemClock.getVirtualClock());
     private Thread myThread = Thread.currentThread();
 
     boolean quit;
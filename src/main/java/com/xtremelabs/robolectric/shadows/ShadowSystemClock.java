@@ -0,0 +1,39 @@
+package com.xtremelabs.robolectric.shadows;
+
+import android.os.SystemClock;
+import com.xtremelabs.robolectric.internal.Implementation;
+import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.util.VirtualClock;
+
+/**
+ * Shadow for {@code SystemClock} that tells the time by the {@link VirtualClock} the loopers, the background
+ * scheduler, alarms and timers all share, so the time only moves when a test advances it.
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+@Implements(SystemClock.class)
+public class ShadowSystemClock {
+    private static final VirtualClock virtualClock = new VirtualClock();
+
+    @Implementation
+    public static long uptimeMillis() {
+        return virtualClock.getCurrentTime();
+    }
+
+    @Implementation
+    public static long elapsedRealtime() {
+        return virtualClock.getCurrentTime();
+    }
+
+    @Implementation
+    public static long currentThreadTimeMillis() {
+        return virtualClock.getCurrentTime();
+    }
+
+    public static VirtualClock getVirtualClock() {
+        return virtualClock;
+    }
+
+    public static void reset() {
+        virtualClock.reset();
+    }
+}
@@ -58,7 +58,7 @@ public class ShadowTime {
 
     @Implementation
     public void setToNow() {
-        set(System.currentTimeMillis());
+        set(ShadowSystemClock.getVirtualClock().currentTimeMillis());
     }
 
 
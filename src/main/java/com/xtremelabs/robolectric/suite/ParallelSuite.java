@@ -0,0 +1,188 @@
+package com.xtremelabs.robolectric.suite;
+
+import org.junit.internal.TextListener;
+import org.junit.internal.runners.ErrorReportingRunner;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs test classes in a pool of long-lived worker JVMs (see {@link SuiteWorker}), instead of instrumenting Android
+ * and parsing resources all over again in every forked JVM.
+ * <p/>
+ * Use it as {@code @RunWith(ParallelSuite.class) @SuiteClasses({...})}, or from the command line with the test class
+ * names as arguments. Set the {@value #WORKERS_PROPERTY} system property to choose how many workers to start; it
+ * defaults to one per processor. Test classes are handed out slowest first, judging by how long they took last time
+ * (see {@link TestDurations}), with each worker taking the next one as soon as it's free. Results are reported as
+ * they come back from the workers.
+ */
+public class ParallelSuite extends Runner {
+    public static final String WORKERS_PROPERTY = "robolectric.workers";
+
+    private final Description description;
+    private final Map<String, Description> testClassDescriptions = new HashMap<String, Description>();
+    private final List<String> testClassNames;
+    private final TestDurations testDurations;
+    private final int workerCount;
+
+    public ParallelSuite(Class<?> suiteClass) throws InitializationError {
+        this(suiteClass.getName(), getSuiteClassNames(suiteClass));
+    }
+
+    public ParallelSuite(String name, List<String> testClassNames) {
+        this(name, testClassNames, TestDurations.fromSystemProperty(),
+                Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    ParallelSuite(String name, List<String> testClassNames, TestDurations testDurations, int workerCount) {
+        this.testClassNames = testClassNames;
+        this.testDurations = testDurations;
+        this.workerCount = Math.max(1, Math.min(workerCount, testClassNames.size()));
+
+        description = Description.createSuiteDescription(name);
+        for (String testClassName : testClassNames) {
+            Description testClassDescription = describe(testClassName);
+            testClassDescriptions.put(testClassName, testClassDescription);
+            description.addChild(testClassDescription);
+        }
+    }
+
+    /**
+     * Describes a test class the way the runner it'll get in the worker will, so tests can be reported against the
+     * same descriptions as they finish. Classes run with a {@link BlockJUnit4ClassRunner} subclass, like
+     * RobolectricTestRunner, are described by a plain {@code BlockJUnit4ClassRunner}, which finds the same tests
+     * without setting up a Robolectric class loader here in the coordinator; only the workers build the real runners.
+     */
+    private static Description describe(String testClassName) {
+        Class<?> testClass;
+        try {
+            testClass = Class.forName(testClassName, false, ParallelSuite.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // as SuiteWorker will report it
+            Description testClassDescription = Description.createSuiteDescription(testClassName);
+            testClassDescription.addChild(Description.createSuiteDescription("initializationError(" + testClassName + ")"));
+            return testClassDescription;
+        }
+
+        RunWith runWith = testClass.getAnnotation(RunWith.class);
+        if (runWith == null || !BlockJUnit4ClassRunner.class.isAssignableFrom(runWith.value())) {
+            return Request.aClass(testClass).getRunner().getDescription();
+        }
+        try {
+            return new BlockJUnit4ClassRunner(testClass).getDescription();
+        } catch (InitializationError e) {
+            // as the worker's runner will report it
+            return new ErrorReportingRunner(testClass, e).getDescription();
+        }
+    }
+
+    private static List<String> getSuiteClassNames(Class<?> suiteClass) throws InitializationError {
+        Suite.SuiteClasses suiteClasses = suiteClass.getAnnotation(Suite.SuiteClasses.class);
+        if (suiteClasses == null) {
+            throw new InitializationError(String.format("class '%s' must have a SuiteClasses annotation", suiteClass.getName()));
+        }
+
+        List<String> classNames = new ArrayList<String>();
+        for (Class<?> testClass : suiteClasses.value()) {
+            classNames.add(testClass.getName());
+        }
+        return classNames;
+    }
+
+    public static void main(String[] args) {
+        JUnitCore junitCore = new JUnitCore();
+        junitCore.addListener(new TextListener(System.out));
+        Result result = junitCore.run(Request.runner(new ParallelSuite(ParallelSuite.class.getName(), Arrays.asList(args))));
+        System.exit(result.wasSuccessful() ? 0 : 1);
+    }
+
+    @Override
+    public Description getDescription() {
+        return description;
+    }
+
+    @Override
+    public void run(final RunNotifier notifier) {
+        final LinkedList<String> queue = new LinkedList<String>(testDurations.slowestFirst(testClassNames));
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < workerCount; i++) {
+            final String workerName = "robolectric-worker-" + (i + 1);
+            Thread thread = new Thread(workerName) {
+                @Override
+                public void run() {
+                    runWorker(workerName, queue, notifier);
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        testDurations.save();
+    }
+
+    private void runWorker(String workerName, LinkedList<String> queue, RunNotifier notifier) {
+        WorkerJvm workerJvm = null;
+        try {
+            String testClassName;
+            while ((testClassName = nextTestClass(queue)) != null) {
+                Description testClassDescription = testClassDescriptions.get(testClassName);
+                if (workerJvm == null) {
+                    try {
+                        workerJvm = WorkerJvm.start(workerName);
+                    } catch (IOException e) {
+                        synchronized (notifier) {
+                            notifier.fireTestFailure(new Failure(testClassDescription, workerFailure(testClassName, e)));
+                        }
+                        continue;
+                    }
+                }
+
+                try {
+                    testDurations.record(testClassName, workerJvm.run(testClassName, testClassDescription, notifier));
+                } catch (IOException e) {
+                    // run() has reported it; start afresh for the next test class
+                    workerJvm.kill();
+                    workerJvm = null;
+                }
+            }
+        } finally {
+            if (workerJvm != null) {
+                workerJvm.stop();
+            }
+        }
+    }
+
+    private static String nextTestClass(LinkedList<String> queue) {
+        synchronized (queue) {
+            return queue.poll();
+        }
+    }
+
+    static RuntimeException workerFailure(String testClassName, IOException e) {
+        return new RuntimeException("worker JVM failed while running " + testClassName, e);
+    }
+}
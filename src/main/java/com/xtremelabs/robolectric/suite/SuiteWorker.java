@@ -0,0 +1,168 @@
+package com.xtremelabs.robolectric.suite;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * The main class of a worker JVM started by {@link ParallelSuite}. It connects back to the suite on a local socket,
+ * then runs whichever test classes it's sent, one at a time, streaming their results back.
+ * <p/>
+ * A worker lives for the whole suite, so everything {@link com.xtremelabs.robolectric.RobolectricTestRunner} keeps in
+ * statics (the instrumenting class loader and the resource loaders) is built by its first test class and reused by
+ * every one after that.
+ */
+public class SuiteWorker {
+    static final int RUN_CLASS = 1;
+    static final int EXIT = 2;
+
+    static final int TEST_STARTED = 10;
+    static final int TEST_FAILED = 11;
+    static final int TEST_ASSUMPTION_FAILED = 12;
+    static final int TEST_IGNORED = 13;
+    static final int TEST_FINISHED = 14;
+    static final int CLASS_FINISHED = 15;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    SuiteWorker(DataInputStream in, DataOutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), Integer.parseInt(args[0]));
+        try {
+            new SuiteWorker(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))).serve();
+        } finally {
+            socket.close();
+        }
+        // tests may have left non-daemon threads behind
+        System.exit(0);
+    }
+
+    void serve() throws IOException {
+        while (in.readByte() == RUN_CLASS) {
+            String className = in.readUTF();
+            long startTime = System.currentTimeMillis();
+            runTestClass(className);
+            out.writeByte(CLASS_FINISHED);
+            out.writeUTF(className);
+            out.writeLong(System.currentTimeMillis() - startTime);
+            out.flush();
+        }
+    }
+
+    private void runTestClass(String className) throws IOException {
+        StreamingListener listener = new StreamingListener();
+        Class<?> testClass;
+        try {
+            testClass = Class.forName(className, false, SuiteWorker.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            Description description = Description.createSuiteDescription("initializationError(" + className + ")");
+            listener.testStarted(description);
+            listener.testFailure(new Failure(description, e));
+            listener.testFinished(description);
+            return;
+        }
+
+        JUnitCore junitCore = new JUnitCore();
+        junitCore.addListener(listener);
+        junitCore.run(Request.aClass(testClass));
+        if (listener.ioException != null) {
+            throw listener.ioException;
+        }
+    }
+
+    static void writeThrowable(DataOutputStream out, Throwable throwable) throws IOException {
+        byte[] serialized;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes);
+            objectOutputStream.writeObject(throwable);
+            objectOutputStream.close();
+            serialized = bytes.toByteArray();
+        } catch (IOException e) {
+            // something in it isn't serializable; the stack trace will have to do
+            serialized = new byte[0];
+        }
+        out.writeInt(serialized.length);
+        out.write(serialized);
+        writeLongString(out, throwable.toString());
+        writeLongString(out, new Failure(Description.EMPTY, throwable).getTrace());
+    }
+
+    // writeUTF() tops out at 64k, which a deep stack trace can exceed
+    static void writeLongString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readLongString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private class StreamingListener extends RunListener {
+        private IOException ioException;
+
+        @Override
+        public void testStarted(Description description) {
+            writeEvent(TEST_STARTED, description, null);
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            writeEvent(TEST_FAILED, failure.getDescription(), failure.getException());
+        }
+
+        @Override
+        public void testAssumptionFailure(Failure failure) {
+            writeEvent(TEST_ASSUMPTION_FAILED, failure.getDescription(), failure.getException());
+        }
+
+        @Override
+        public void testIgnored(Description description) {
+            writeEvent(TEST_IGNORED, description, null);
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            writeEvent(TEST_FINISHED, description, null);
+        }
+
+        private void writeEvent(int event, Description description, Throwable throwable) {
+            if (ioException != null) {
+                return;
+            }
+
+            try {
+                out.writeByte(event);
+                writeLongString(out, description.getDisplayName());
+                if (throwable != null) {
+                    writeThrowable(out, throwable);
+                }
+                // so the suite can report it now, and still knows what was running if this JVM dies
+                out.flush();
+            } catch (IOException e) {
+                ioException = e;
+            }
+        }
+    }
+}
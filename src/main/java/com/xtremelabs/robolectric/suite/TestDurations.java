@@ -0,0 +1,102 @@
+package com.xtremelabs.robolectric.suite;
+
+import com.xtremelabs.robolectric.util.CacheDirectory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * How long each test class took the last time it ran, so {@link ParallelSuite} can start the slow ones first.
+ */
+public class TestDurations {
+    public static final long UNKNOWN = -1;
+
+    private final File file;
+    private final Properties durations = new Properties();
+
+    public TestDurations(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try {
+                InputStream inputStream = new FileInputStream(file);
+                try {
+                    durations.load(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                // no problem, we'll just schedule in the order we were given
+                durations.clear();
+            }
+        }
+    }
+
+    public static TestDurations fromSystemProperty() {
+        return new TestDurations(CacheDirectory.file("robolectric-test-durations.properties"));
+    }
+
+    public synchronized long get(String className) {
+        String millis = durations.getProperty(className);
+        if (millis == null) {
+            return UNKNOWN;
+        }
+        try {
+            return Long.parseLong(millis);
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+    }
+
+    public synchronized void record(String className, long millis) {
+        durations.setProperty(className, String.valueOf(millis));
+    }
+
+    /**
+     * @return {@code classNames} with the slowest first; classes that haven't been timed yet go ahead of all of them,
+     *         since there's no telling how slow they are
+     */
+    public List<String> slowestFirst(Collection<String> classNames) {
+        List<String> ordered = new ArrayList<String>(classNames);
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                long aMillis = effectiveDuration(a);
+                long bMillis = effectiveDuration(b);
+                return aMillis > bMillis ? -1 : (aMillis == bMillis ? 0 : 1);
+            }
+        });
+        return ordered;
+    }
+
+    private long effectiveDuration(String className) {
+        long millis = get(className);
+        return millis == UNKNOWN ? Long.MAX_VALUE : millis;
+    }
+
+    public synchronized void save() {
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                durations.store(outputStream, "robolectric test class durations, in milliseconds");
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: couldn't save test durations to " + file + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.xtremelabs.robolectric.suite;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The suite's end of a {@link SuiteWorker}: the process, and the socket its results come back on.
+ */
+class WorkerJvm {
+    private static final int CONNECT_TIMEOUT_MILLIS = 60000;
+
+    private final Process process;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private WorkerJvm(Process process, Socket socket) throws IOException {
+        this.process = process;
+        this.socket = socket;
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    static WorkerJvm start(String name) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName(null));
+        try {
+            List<String> command = new ArrayList<String>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+            command.addAll(workerJvmArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SuiteWorker.class.getName());
+            command.add(String.valueOf(serverSocket.getLocalPort()));
+
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            pipe(process.getInputStream(), System.out, name);
+
+            serverSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                process.destroy();
+                throw e;
+            }
+            return new WorkerJvm(process, socket);
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static List<String> workerJvmArguments() {
+        List<String> arguments = new ArrayList<String>();
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // every worker would try to listen on the same debugger port
+            if (!argument.startsWith("-agentlib:jdwp") && !argument.startsWith("-Xrunjdwp")) {
+                arguments.add(argument);
+            }
+        }
+        // build tools often set these after startup, so they aren't on our command line
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+            String key = (String) property.getKey();
+            if (key.startsWith("robolectric.") || key.startsWith("cached.robolectric.")) {
+                arguments.add("-D" + key + "=" + property.getValue());
+            }
+        }
+        return arguments;
+    }
+
+    private static void pipe(final InputStream inputStream, final PrintStream printStream, String name) {
+        Thread thread = new Thread(name + "-output") {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[8192];
+                try {
+                    int count;
+                    while ((count = inputStream.read(buffer)) != -1) {
+                        printStream.write(buffer, 0, count);
+                    }
+                } catch (IOException ignore) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs {@code className} in the worker, reporting its results to {@code notifier} as they stream in. If the worker
+     * dies partway through, the tests it was in the middle of are reported as failed and finished, or the whole class
+     * as failed if it wasn't in the middle of one.
+     *
+     * @param description the test class's description, as the suite reported it up front
+     * @return how long the test class took, in milliseconds
+     * @throws IOException after reporting the failure, if the worker couldn't be talked to
+     */
+    long run(String className, Description description, RunNotifier notifier) throws IOException {
+        Map<String, Description> descriptions = new HashMap<String, Description>();
+        collectDescriptions(description, descriptions);
+        Set<Description> running = new LinkedHashSet<Description>();
+
+        try {
+            out.writeByte(SuiteWorker.RUN_CLASS);
+            out.writeUTF(className);
+            out.flush();
+
+            int eventType;
+            while ((eventType = in.readByte()) != SuiteWorker.CLASS_FINISHED) {
+                String displayName = SuiteWorker.readLongString(in);
+                Description testDescription = descriptions.get(displayName);
+                if (testDescription == null) {
+                    testDescription = Description.createSuiteDescription(displayName);
+                }
+                Throwable throwable = null;
+                if (eventType == SuiteWorker.TEST_FAILED || eventType == SuiteWorker.TEST_ASSUMPTION_FAILED) {
+                    throwable = readThrowable(in);
+                }
+
+                if (eventType == SuiteWorker.TEST_STARTED) {
+                    running.add(testDescription);
+                } else if (eventType == SuiteWorker.TEST_FINISHED) {
+                    running.remove(testDescription);
+                }
+                synchronized (notifier) {
+                    fire(notifier, eventType, testDescription, throwable);
+                }
+            }
+            in.readUTF();
+            return in.readLong();
+        } catch (IOException e) {
+            synchronized (notifier) {
+                if (running.isEmpty()) {
+                    notifier.fireTestFailure(new Failure(description, ParallelSuite.workerFailure(className, e)));
+                }
+                for (Description testDescription : running) {
+                    notifier.fireTestFailure(new Failure(testDescription, ParallelSuite.workerFailure(className, e)));
+                    notifier.fireTestFinished(testDescription);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static void collectDescriptions(Description description, Map<String, Description> descriptions) {
+        if (!descriptions.containsKey(description.getDisplayName())) {
+            descriptions.put(description.getDisplayName(), description);
+        }
+        for (Description child : description.getChildren()) {
+            collectDescriptions(child, descriptions);
+        }
+    }
+
+    private static void fire(RunNotifier notifier, int eventType, Description description, Throwable throwable) {
+        switch (eventType) {
+            case SuiteWorker.TEST_STARTED:
+                notifier.fireTestStarted(description);
+                break;
+            case SuiteWorker.TEST_FAILED:
+                notifier.fireTestFailure(new Failure(description, throwable));
+                break;
+            case SuiteWorker.TEST_ASSUMPTION_FAILED:
+                notifier.fireTestAssumptionFailed(new Failure(description, throwable));
+                break;
+            case SuiteWorker.TEST_IGNORED:
+                notifier.fireTestIgnored(description);
+                break;
+            case SuiteWorker.TEST_FINISHED:
+                notifier.fireTestFinished(description);
+                break;
+            default:
+                throw new RuntimeException("unknown worker event " + eventType);
+        }
+    }
+
+    static Throwable readThrowable(DataInputStream in) throws IOException {
+        byte[] serialized = new byte[in.readInt()];
+        in.readFully(serialized);
+        String summary = SuiteWorker.readLongString(in);
+        String trace = SuiteWorker.readLongString(in);
+
+        if (serialized.length > 0) {
+            try {
+                return (Throwable) new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+            } catch (Exception e) {
+                // fall through to the stack trace
+            }
+        }
+        return new RemoteTestFailure(summary, trace);
+    }
+
+    void stop() {
+        try {
+            out.writeByte(SuiteWorker.EXIT);
+            out.flush();
+            socket.close();
+            process.waitFor();
+        } catch (IOException e) {
+            process.destroy();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void kill() {
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+        process.destroy();
+    }
+
+    /**
+     * Stands in for an exception that couldn't be brought back from a worker, printing the worker's stack trace.
+     */
+    static class RemoteTestFailure extends RuntimeException {
+        private final String summary;
+        private final String trace;
+
+        RemoteTestFailure(String summary, String trace) {
+            super(summary);
+            this.summary = summary;
+            this.trace = trace;
+            setStackTrace(new StackTraceElement[0]);
+        }
+
+        @Override
+        public String toString() {
+            return summary;
+        }
+
+        @Override
+        public void printStackTrace(PrintStream s) {
+            s.print(trace);
+        }
+
+        @Override
+        public void printStackTrace(PrintWriter s) {
+            s.print(trace);
+        }
+    }
+}
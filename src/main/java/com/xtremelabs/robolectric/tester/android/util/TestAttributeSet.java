@@ -16,6 +16,11 @@ public class TestAttributeSet implements AttributeSet {
     private Class<? extends View> viewClass;
     private boolean isSystem = false;
 
+    // worked out on first use since the same set is read many times
+    private SplitAttributes splitAttributes;
+    // set while attributes belongs to the SplitAttributes this set was made from, which must not change
+    private boolean attributesShared;
+
     /**
      * Names of attributes to be validated for i18n-safe values.
      */
@@ -35,6 +40,17 @@ public class TestAttributeSet implements AttributeSet {
         this.isSystem = isSystem;
     }
 
+    /**
+     * Makes a set that reads {@code splitAttributes} without splitting them again, so one {@link SplitAttributes} can
+     * serve any number of sets. Attributes {@link #put} into the set only change it, not the others.
+     */
+    public TestAttributeSet(SplitAttributes splitAttributes, ResourceExtractor resourceExtractor,
+                            AttrResourceLoader attrResourceLoader, Class<? extends View> viewClass) {
+        this(splitAttributes.attributes, resourceExtractor, attrResourceLoader, viewClass, splitAttributes.isSystem);
+        this.splitAttributes = splitAttributes;
+        this.attributesShared = true;
+    }
+
     public TestAttributeSet() {
         this(new HashMap<String, String>());
     }
@@ -53,7 +69,12 @@ public class TestAttributeSet implements AttributeSet {
     }
 
     public TestAttributeSet put(String name, String value) {
+        if (attributesShared) {
+            attributes = new HashMap<String, String>(attributes);
+            attributesShared = false;
+        }
         attributes.put(name, value);
+        splitAttributes = null;
         return this;
     }
 
@@ -207,23 +228,63 @@ public class TestAttributeSet implements AttributeSet {
     }
 
     private String getAttributeValueInMap(String namespace, String attribute) {
-        String value = null;
-        for (String key : attributes.keySet()) {
-            String[] mappedKeys = {null, key};
-            if (key.contains(":")) {
-                mappedKeys = key.split(":");
-            }
+        SplitAttributes splitAttributes = this.splitAttributes;
+        if (splitAttributes == null) {
+            splitAttributes = new SplitAttributes(attributes, isSystem);
+            this.splitAttributes = splitAttributes;
+        }
+        return splitAttributes.get(namespace, attribute);
+    }
 
-            if (mappedKeys[1].equals(attribute) && (
-                    namespace == null || !namespace.equals("android") ||
-                            (namespace.equals("android") && namespace.equals(mappedKeys[0])))) {
-                value = attributes.get(key);
-                break;
+    /**
+     * Attributes split into prefix, name and value, ready to be looked up. Never changes once made, so it can be shared
+     * between threads and between the {@link TestAttributeSet}s made from it.
+     */
+    public static class SplitAttributes {
+        private final Map<String, String> attributes;
+        private final boolean isSystem;
+        private final String[] prefixes;
+        private final String[] names;
+        private final String[] values;
+
+        /**
+         * @param attributes must not change from here on
+         */
+        public SplitAttributes(Map<String, String> attributes, boolean isSystem) {
+            this.attributes = attributes;
+            this.isSystem = isSystem;
+            prefixes = new String[attributes.size()];
+            names = new String[attributes.size()];
+            values = new String[attributes.size()];
+            int i = 0;
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                String key = attribute.getKey();
+                int colon = key.indexOf(':');
+                if (colon == -1) {
+                    names[i] = key;
+                } else {
+                    int nextColon = key.indexOf(':', colon + 1);
+                    prefixes[i] = key.substring(0, colon);
+                    names[i] = key.substring(colon + 1, nextColon == -1 ? key.length() : nextColon);
+                }
+
+                String value = attribute.getValue();
+                if (value != null && isSystem && value.startsWith("@+id")) {
+                    value = value.replace("@+id", "@+android:id");
+                }
+                values[i] = value;
+                i++;
             }
         }
-        if (value != null && isSystem && value.startsWith("@+id")) {
-            value = value.replace("@+id", "@+android:id");
+
+        private String get(String namespace, String attribute) {
+            boolean androidOnly = "android".equals(namespace);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(attribute) && (!androidOnly || "android".equals(prefixes[i]))) {
+                    return values[i];
+                }
+            }
+            return null;
         }
-        return value;
     }
 }
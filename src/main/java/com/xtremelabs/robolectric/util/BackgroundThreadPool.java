@@ -0,0 +1,110 @@
+package com.xtremelabs.robolectric.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of real threads for background work, used instead of the background {@link Scheduler} when a test
+ * run opts in with the {@value #THREADS_PROPERTY} system property. Work that has to happen on the UI thread is still
+ * posted to the UI thread scheduler from the pool's threads, and only runs when the test thread runs that scheduler.
+ * <p/>
+ * Failures in background work are held on to and thrown from {@link #waitUntilIdle()} on the test thread, rather
+ * than going unseen on the thread they happened on. Idle threads die off after a second, so a pool that's no longer
+ * used doesn't need shutting down.
+ */
+public class BackgroundThreadPool {
+    public static final String THREADS_PROPERTY = "robolectric.backgroundThreads";
+
+    private final ThreadPoolExecutor executor;
+    private int pendingTaskCount;
+    private Throwable failure;
+
+    /**
+     * @return a pool with as many threads as the {@value #THREADS_PROPERTY} system property asks for, or null if it
+     *         doesn't ask for any
+     */
+    public static BackgroundThreadPool fromSystemProperties() {
+        int threadCount = Integer.getInteger(THREADS_PROPERTY, 0);
+        return threadCount > 0 ? new BackgroundThreadPool(threadCount) : null;
+    }
+
+    public BackgroundThreadPool(int threadCount) {
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public void execute(final Runnable runnable) {
+        synchronized (this) {
+            pendingTaskCount++;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    failed(t);
+                } finally {
+                    finished();
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until all the work handed to the pool has finished, including any that work handed on in turn.
+     *
+     * @throws RuntimeException wrapping the first failure in background work since the pool was last idle
+     */
+    public synchronized void waitUntilIdle() {
+        while (pendingTaskCount > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        if (failure != null) {
+            Throwable t = failure;
+            failure = null;
+            throw new RuntimeException("An error occurred in a background thread", t);
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return pendingTaskCount == 0;
+    }
+
+    private synchronized void failed(Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    private synchronized void finished() {
+        if (--pendingTaskCount == 0) {
+            notifyAll();
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "robolectric-background-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.xtremelabs.robolectric.util;
+
+import java.io.File;
+
+/**
+ * Where Robolectric keeps what it caches from one run to the next: the directory named by the {@value #PROPERTY}
+ * system property, or {@code ./tmp} if it isn't set.
+ */
+public class CacheDirectory {
+    public static final String PROPERTY = "cached.robolectric.classes.path";
+
+    public static File get() {
+        String path = System.getProperty(PROPERTY);
+        if (path == null || "".equals(path.trim())) {
+            return new File("./tmp");
+        }
+        return new File(path);
+    }
+
+    public static File file(String name) {
+        return new File(get(), name);
+    }
+}
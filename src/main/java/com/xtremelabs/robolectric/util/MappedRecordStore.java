@@ -0,0 +1,340 @@
+package com.xtremelabs.robolectric.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A file of named, keyed byte buffers, shared by every JVM that opens the same path. Used to keep instrumented classes
+ * (see {@link com.xtremelabs.robolectric.bytecode.ClassCache}) and parsed resource files between runs.
+ * <p/>
+ * The file is a header ({@code magic, version}) followed by append-only records of
+ * {@code nameLength, name, keyLength, key, valueLength, value}. Existing records are memory-mapped and indexed on open
+ * without copying their values; new records are appended under an exclusive file lock, so concurrent forks never
+ * rewrite each other's records. A torn record at the end of the file (e.g. from a killed fork) is ignored on read and
+ * truncated by the next writer. A file in another format is replaced by a new one rather than truncated, since other
+ * JVMs may still have it mapped.
+ * <p/>
+ * Each value is stored with a key describing everything it was generated from. Lookups with a different key miss, so
+ * stale values are simply regenerated and superseded by a later record rather than invalidating the whole file.
+ * <p/>
+ * Once superseded records take up more than half the file (and more than a threshold), the writer that notices
+ * rewrites the live records, in their original order, to a new file and renames it into place, marking the old file
+ * as superseded. Other JVMs keep reading the old file they have mapped, and move over to the new one the next time
+ * they take the lock.
+ * <p/>
+ * If the file can't be used, values are just kept in memory for this run.
+ */
+public class MappedRecordStore {
+    private static final int MAGIC = 0x526f626f; // "Robo"
+    private static final int HEADER_SIZE = 8;
+    private static final int FORMAT_VERSION = 2;
+    private static final int SUPERSEDED_VERSION = -1;
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+    // FileLocks are held on behalf of the whole JVM, so writers in this JVM must take turns before asking for one
+    private static final Object JVM_WRITE_LOCK = new Object();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final File file;
+    private final long compactionThreshold;
+    // guarded by JVM_WRITE_LOCK: the records in the file we have open, in the order their names were first written,
+    // and how many bytes of it are superseded
+    private final Map<String, Entry> persistedEntries = new LinkedHashMap<String, Entry>();
+    private long staleBytes;
+    private FileChannel channel;
+    private long validLength;
+
+    public MappedRecordStore(String path) {
+        this(path, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param compactionThreshold how many bytes of superseded records to put up with before compacting
+     */
+    public MappedRecordStore(String path, long compactionThreshold) {
+        this.file = new File(path).getAbsoluteFile();
+        this.compactionThreshold = compactionThreshold;
+        try {
+            File directory = file.getParentFile();
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            channel = new RandomAccessFile(file, "rw").getChannel();
+
+            synchronized (JVM_WRITE_LOCK) {
+                FileLock lock = lockCurrentFile();
+                try {
+                    while (!hasValidHeader()) {
+                        lock = replaceWithEmptyFile(lock);
+                    }
+                    validLength = HEADER_SIZE;
+                    readNewEntries();
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            // no problem, we'll just keep this run's records in memory
+            closeQuietly();
+        }
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @return the names in the file as of the last time we read it, in the order they were first written
+     */
+    public List<String> persistedNames() {
+        synchronized (JVM_WRITE_LOCK) {
+            return new ArrayList<String>(persistedEntries.keySet());
+        }
+    }
+
+    /**
+     * Returns a read-only view of the value stored for {@code name} if it was stored under {@code key}, backed directly
+     * by the mapped file when it was read from disk. Each call returns an independent buffer, so callers on different
+     * threads don't need to coordinate.
+     */
+    public ByteBuffer get(String name, String key) {
+        Entry entry = entries.get(name);
+        if (entry == null || !entry.key.equals(key)) {
+            return null;
+        }
+        return entry.value.duplicate();
+    }
+
+    public void put(String name, String key, byte[] value) {
+        Entry entry = new Entry(key, ByteBuffer.wrap(value).asReadOnlyBuffer(), 0);
+        Entry previous = entries.put(name, entry);
+        if (previous != null && previous.key.equals(key)) {
+            return;
+        }
+
+        synchronized (JVM_WRITE_LOCK) {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                FileLock lock = lockCurrentFile();
+                try {
+                    readNewEntries();
+                    if (channel.size() > validLength) {
+                        channel.truncate(validLength);
+                    }
+                    int recordLength = writeFully(channel, record(name, key, entry.value.duplicate()), validLength);
+                    validLength += recordLength;
+                    index(name, new Entry(key, entry.value, recordLength));
+
+                    if (staleBytes > compactionThreshold && staleBytes > validLength - HEADER_SIZE - staleBytes) {
+                        compact();
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                // stop persisting, but keep serving what we've got
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Locks the file at our path, first moving over to it if the file we have open has been compacted into a
+     * new one since we last looked. Must be called while holding {@code JVM_WRITE_LOCK}.
+     */
+    private FileLock lockCurrentFile() throws IOException {
+        while (true) {
+            FileLock lock = channel.lock();
+            if (headerVersion() != SUPERSEDED_VERSION) {
+                return lock;
+            }
+
+            lock.release();
+            // records already read stay mapped from the old file, and are replaced as the new one is read
+            FileChannel oldChannel = channel;
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            oldChannel.close();
+            persistedEntries.clear();
+            staleBytes = 0;
+            validLength = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Writes the live records to a new file and renames it over our path. Must be called while holding the file
+     * lock, with every record in the file read.
+     */
+    private void compact() throws IOException {
+        File compactedFile = new File(file.getPath() + ".compacting");
+        FileChannel compactedChannel = new RandomAccessFile(compactedFile, "rw").getChannel();
+        try {
+            compactedChannel.truncate(0);
+            long position = writeFully(compactedChannel, header(FORMAT_VERSION), 0);
+            for (Map.Entry<String, Entry> persisted : persistedEntries.entrySet()) {
+                Entry entry = persisted.getValue();
+                position += writeFully(compactedChannel, record(persisted.getKey(), entry.key, entry.value.duplicate()), position);
+            }
+            compactedChannel.force(false);
+        } finally {
+            compactedChannel.close();
+        }
+
+        if (!compactedFile.renameTo(file)) {
+            // e.g. the file is in use on a platform that won't replace open files; try again another time
+            compactedFile.delete();
+            return;
+        }
+        // anyone else still using the old file moves over when they next lock it, and so do we
+        writeFully(channel, header(SUPERSEDED_VERSION), 0);
+    }
+
+    private int headerVersion() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC ? header.getInt() : 0;
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        return headerVersion() == FORMAT_VERSION;
+    }
+
+    /**
+     * Renames an empty file over one we can't read, rather than truncating it under other JVMs that may still have it
+     * mapped, and locks the new file. Must be called while holding {@code lock} on the file we have open.
+     */
+    private FileLock replaceWithEmptyFile(FileLock lock) throws IOException {
+        File emptyFile = File.createTempFile(file.getName(), ".new", file.getParentFile());
+        FileChannel emptyChannel = new RandomAccessFile(emptyFile, "rw").getChannel();
+        try {
+            writeFully(emptyChannel, header(FORMAT_VERSION), 0);
+            emptyChannel.force(false);
+        } finally {
+            emptyChannel.close();
+        }
+
+        if (!emptyFile.renameTo(file)) {
+            emptyFile.delete();
+            throw new IOException("couldn't replace " + file);
+        }
+        // anyone else with the old file open moves over when they next lock it, and so do we
+        writeFully(channel, header(SUPERSEDED_VERSION), 0);
+        lock.release();
+        return lockCurrentFile();
+    }
+
+    private ByteBuffer header(int version) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(version);
+        header.flip();
+        return header;
+    }
+
+    private void index(String name, Entry entry) {
+        // later records supersede earlier ones with the same name
+        Entry previous = persistedEntries.put(name, entry);
+        if (previous != null) {
+            staleBytes += previous.recordLength;
+        }
+        entries.put(name, entry);
+    }
+
+    /**
+     * Indexes any complete records appended (by us or by another JVM) since we last looked. Must be called while
+     * holding the file lock.
+     */
+    private void readNewEntries() throws IOException {
+        long size = channel.size();
+        if (size <= validLength) {
+            return;
+        }
+
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, validLength, size - validLength);
+        while (region.remaining() >= 4) {
+            int recordStart = region.position();
+            int nameLength = region.getInt();
+            // compared this way round so a corrupt length can't overflow
+            if (nameLength < 0 || nameLength > region.remaining() - 4) {
+                break;
+            }
+            byte[] nameBytes = new byte[nameLength];
+            region.get(nameBytes);
+            int keyLength = region.getInt();
+            if (keyLength < 0 || keyLength > region.remaining() - 4) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            region.get(keyBytes);
+            int valueLength = region.getInt();
+            if (valueLength < 0 || valueLength > region.remaining()) {
+                break;
+            }
+
+            ByteBuffer value = region.slice();
+            value.limit(valueLength);
+            region.position(region.position() + valueLength);
+
+            int recordLength = region.position() - recordStart;
+            index(new String(nameBytes, "UTF-8"), new Entry(new String(keyBytes, "UTF-8"), value, recordLength));
+            validLength += recordLength;
+        }
+    }
+
+    private ByteBuffer record(String name, String key, ByteBuffer value) throws IOException {
+        byte[] nameBytes = name.getBytes("UTF-8");
+        byte[] keyBytes = key.getBytes("UTF-8");
+        ByteBuffer record = ByteBuffer.allocate(4 + nameBytes.length + 4 + keyBytes.length + 4 + value.remaining());
+        record.putInt(nameBytes.length).put(nameBytes)
+                .putInt(keyBytes.length).put(keyBytes)
+                .putInt(value.remaining()).put(value);
+        record.flip();
+        return record;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+            channel = null;
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final ByteBuffer value;
+        private final int recordLength;
+
+        Entry(String key, ByteBuffer value, int recordLength) {
+            this.key = key;
+            this.value = value;
+            this.recordLength = recordLength;
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class RobolectricBackgroundExecutorService implements ExecutorService {
     }
 
     private <T> Future<T> schedule(final FutureTask<T> futureTask) {
-        Robolectric.getShadowApplication().getBackgroundScheduler().post(new Runnable() {
+        Robolectric.getShadowApplication().runInBackground(new Runnable() {
             @Override
             public void run() {
                 futureTask.run();
@@ -1,19 +1,58 @@
 package com.xtremelabs.robolectric.util;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
-
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runnables waiting to be run at a point in virtual time. They're kept in a heap ordered by time and then by when
+ * they were posted, so posting and running are O(log n) however many are waiting. Removed runnables are only marked
+ * as cancelled, to be dropped when they reach the head of the heap.
+ * <p/>
+ * Time is a 64-bit count of milliseconds that only moves forward. Runnables run in order of the time they're due,
+ * and runnables due at the same time in the order they were posted, except that those posted with
+ * {@link #postAtFrontOfQueue(Runnable)} go ahead of everything else that is due, the latest first. Delays that would
+ * take a runnable past {@link Long#MAX_VALUE} schedule it at {@code Long.MAX_VALUE}, and negative delays count as no
+ * delay.
+ * <p/>
+ * Runnables posted from other threads don't take the scheduler's lock: they're dropped into a lock-free inbox, and
+ * moved into the heap by the scheduler's own thread the next time it looks at what's waiting. So a background thread
+ * can't be held up posting while the test thread is busy running runnables, even by a runnable that waits for it.
+ * <p/>
+ * Time is kept by a {@link VirtualClock}, which may be shared with other schedulers. Advancing this scheduler only
+ * runs its own runnables, but moves the time for all of them; use the clock to run everything due in order.
+ */
 public class Scheduler {
-    private List<PostedRunnable> postedRunnables = new ArrayList<PostedRunnable>();
-    private long currentTime = 0;
+    private PriorityQueue<PostedRunnable> postedRunnables = new PriorityQueue<PostedRunnable>();
+    private Map<Runnable, List<PostedRunnable>> postedRunnablesByRunnable = new IdentityHashMap<Runnable, List<PostedRunnable>>();
+    private int enqueuedTaskCount = 0;
+    private int cancelledTaskCount = 0;
+    private final Queue<PostedRunnable> inbox = new ConcurrentLinkedQueue<PostedRunnable>();
+    private final VirtualClock clock;
+    private int clockGeneration;
     private boolean paused = false;
-    private Thread associatedThread = Thread.currentThread();
+    private final Thread associatedThread = Thread.currentThread();
     private boolean isConstantlyIdling = false;
 
-    public synchronized long getCurrentTime() {
-        return currentTime;
+    public Scheduler() {
+        this(new VirtualClock());
+    }
+
+    public Scheduler(VirtualClock clock) {
+        this.clock = clock;
+        clockGeneration = clock.join(this);
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    public long getCurrentTime() {
+        return clock.getCurrentTime();
     }
 
     public synchronized void pause() {
@@ -29,92 +68,125 @@ public class Scheduler {
         return paused;
     }
 
-    public synchronized void postDelayed(Runnable runnable, long delayMillis) {
-        if ((!isConstantlyIdling && (paused || delayMillis > 0)) || Thread.currentThread() != associatedThread) {
-	        postedRunnables.add(new PostedRunnable(runnable, currentTime + delayMillis));
-	        Collections.sort(postedRunnables);
-        } else {
-            runnable.run();
+    public void postDelayed(Runnable runnable, long delayMillis) {
+        if (Thread.currentThread() != associatedThread) {
+            // sequence numbers are handed out as the inbox is drained; the sign says which kind to give
+            inbox.add(new PostedRunnable(runnable, timeAfter(Math.max(0, delayMillis)), 0));
+            return;
+        }
+
+        synchronized (this) {
+            if (!isConstantlyIdling && (paused || delayMillis > 0)) {
+                enqueue(new PostedRunnable(runnable, timeAfter(Math.max(0, delayMillis)), clock.nextSequenceNumber()));
+                return;
+            }
         }
+        runnable.run();
     }
 
-    public synchronized void post(Runnable runnable) {
+    public void post(Runnable runnable) {
         postDelayed(runnable, 0);
     }
 
-    public synchronized void postAtFrontOfQueue(Runnable runnable) {
-        if (paused || Thread.currentThread() != associatedThread) {
-        	postedRunnables.add(0, new PostedRunnable(runnable, currentTime));
-        } else {
-            runnable.run();
+    public void postAtFrontOfQueue(Runnable runnable) {
+        if (Thread.currentThread() != associatedThread) {
+            inbox.add(new PostedRunnable(runnable, clock.getCurrentTime(), -1));
+            return;
         }
+
+        synchronized (this) {
+            if (paused) {
+                enqueue(new PostedRunnable(runnable, clock.getCurrentTime(), clock.nextFrontOfQueueSequenceNumber()));
+                return;
+            }
+        }
+        runnable.run();
     }
 
     public synchronized void remove(Runnable runnable) {
-        ListIterator<PostedRunnable> iterator = postedRunnables.listIterator();
-        while (iterator.hasNext()) {
-            PostedRunnable next = iterator.next();
-            if (next.runnable == runnable) {
-                iterator.remove();
+        drainInbox();
+        List<PostedRunnable> postings = postedRunnablesByRunnable.remove(runnable);
+        if (postings != null) {
+            for (PostedRunnable postedRunnable : postings) {
+                postedRunnable.cancelled = true;
+            }
+            enqueuedTaskCount -= postings.size();
+            cancelledTaskCount += postings.size();
+            if (cancelledTaskCount > enqueuedTaskCount + 64) {
+                dropCancelledTasks();
             }
         }
     }
 
     public synchronized boolean advanceToLastPostedRunnable() {
+        drainInbox();
         if (enqueuedTaskCount() < 1) {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(postedRunnables.size() - 1).scheduledTime);
+        long lastScheduledTime = Long.MIN_VALUE;
+        for (PostedRunnable postedRunnable : postedRunnables) {
+            if (!postedRunnable.cancelled && postedRunnable.scheduledTime > lastScheduledTime) {
+                lastScheduledTime = postedRunnable.scheduledTime;
+            }
+        }
+        return advanceTo(lastScheduledTime);
     }
 
     public synchronized boolean advanceToNextPostedRunnable() {
+        drainInbox();
         if (enqueuedTaskCount() < 1) {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(0).scheduledTime);
+        return advanceTo(peekNext().scheduledTime);
     }
 
     public synchronized boolean advanceBy(long intervalMs) {
-        long endingTime = currentTime + intervalMs;
+        long endingTime = timeAfter(intervalMs);
         return advanceTo(endingTime);
     }
 
     public synchronized boolean advanceTo(long endingTime) {
-        if (endingTime - currentTime < 0 || enqueuedTaskCount() < 1) {
+        drainInbox();
+        if (endingTime < clock.getCurrentTime()) {
             return false;
         }
 
+        // run everything due straight off the heap, including anything those runnables post that's due in time
         int runCount = 0;
-        while (nextTaskIsScheduledBefore(endingTime)) {
-            runOneTask();
+        PostedRunnable postedRunnable;
+        while ((postedRunnable = dequeueIfDueBy(endingTime)) != null) {
+            clock.moveTo(postedRunnable.scheduledTime);
+            postedRunnable.run();
             ++runCount;
         }
-        currentTime = endingTime;
+        clock.moveTo(endingTime);
 
         return runCount > 0;
     }
 
     public synchronized boolean runOneTask() {
+        drainInbox();
         if (enqueuedTaskCount() < 1) {
             return false;
         }
 
-        PostedRunnable postedRunnable = postedRunnables.remove(0);
-        currentTime = postedRunnable.scheduledTime;
+        PostedRunnable postedRunnable = dequeue();
+        clock.moveTo(postedRunnable.scheduledTime);
         postedRunnable.run();
         return true;
     }
 
     public synchronized boolean runTasks(int howMany) {
+        drainInbox();
         if (enqueuedTaskCount() < howMany) {
             return false;
         }
 
         while (howMany > 0) {
-            PostedRunnable postedRunnable = postedRunnables.remove(0);
-            currentTime = postedRunnable.scheduledTime;
+            PostedRunnable postedRunnable = dequeue();
+            clock.moveTo(postedRunnable.scheduledTime);
             postedRunnable.run();
             howMany--;
         }
@@ -122,39 +194,148 @@ public class Scheduler {
     }
 
     public synchronized int enqueuedTaskCount() {
-        return postedRunnables.size();
+        drainInbox();
+        return enqueuedTaskCount;
     }
 
     public synchronized boolean areAnyRunnable() {
-        return nextTaskIsScheduledBefore(currentTime);
+        return nextTaskIsScheduledBefore(clock.getCurrentTime());
     }
 
     public synchronized void reset() {
+        inbox.clear();
         postedRunnables.clear();
+        postedRunnablesByRunnable.clear();
+        enqueuedTaskCount = 0;
+        cancelledTaskCount = 0;
         paused = false;
         isConstantlyIdling = false;
     }
 
     public synchronized int size() {
-        return postedRunnables.size();
+        drainInbox();
+        return enqueuedTaskCount;
     }
 
     public void idleConstantly(boolean shouldIdleConstantly) {
         isConstantlyIdling = shouldIdleConstantly;
     }
 
+    /**
+     * @return the next runnable due, or null if there isn't one
+     */
+    synchronized PostedRunnable peekNextTask() {
+        drainInbox();
+        return enqueuedTaskCount < 1 ? null : peekNext();
+    }
+
+    private void enqueue(PostedRunnable postedRunnable) {
+        if (clockGeneration != clock.getGeneration()) {
+            // the clock has been reset since this scheduler last posted
+            clockGeneration = clock.join(this);
+        }
+        postedRunnables.add(postedRunnable);
+        List<PostedRunnable> postings = postedRunnablesByRunnable.get(postedRunnable.runnable);
+        if (postings == null) {
+            postings = new ArrayList<PostedRunnable>(1);
+            postedRunnablesByRunnable.put(postedRunnable.runnable, postings);
+        }
+        postings.add(postedRunnable);
+        enqueuedTaskCount++;
+    }
+
+    private void drainInbox() {
+        PostedRunnable postedRunnable;
+        while ((postedRunnable = inbox.poll()) != null) {
+            if (postedRunnable.sequenceNumber < 0) {
+                postedRunnable.sequenceNumber = clock.nextFrontOfQueueSequenceNumber();
+            } else {
+                postedRunnable.sequenceNumber = clock.nextSequenceNumber();
+            }
+            enqueue(postedRunnable);
+        }
+    }
+
+    private PostedRunnable dequeueIfDueBy(long endingTime) {
+        drainInbox();
+        if (enqueuedTaskCount < 1 || peekNext().scheduledTime > endingTime) {
+            return null;
+        }
+        return dequeue();
+    }
+
+    /**
+     * @return the time {@code intervalMs} from now, held at the ends of the range rather than wrapping around
+     */
+    private long timeAfter(long intervalMs) {
+        long currentTime = clock.getCurrentTime();
+        long time = currentTime + intervalMs;
+        if (intervalMs > 0 && time < currentTime) {
+            return Long.MAX_VALUE;
+        } else if (intervalMs < 0 && time > currentTime) {
+            return Long.MIN_VALUE;
+        }
+        return time;
+    }
+
+    private PostedRunnable dequeue() {
+        PostedRunnable postedRunnable = peekNext();
+        postedRunnables.poll();
+        List<PostedRunnable> postings = postedRunnablesByRunnable.get(postedRunnable.runnable);
+        postings.remove(postedRunnable);
+        if (postings.isEmpty()) {
+            postedRunnablesByRunnable.remove(postedRunnable.runnable);
+        }
+        enqueuedTaskCount--;
+        return postedRunnable;
+    }
+
+    /**
+     * @return the next runnable due, after dropping any cancelled ones ahead of it; only call this if there is one
+     */
+    private PostedRunnable peekNext() {
+        PostedRunnable postedRunnable;
+        while ((postedRunnable = postedRunnables.peek()).cancelled) {
+            postedRunnables.poll();
+            cancelledTaskCount--;
+        }
+        return postedRunnable;
+    }
+
+    /**
+     * Rebuilds the heap without the cancelled runnables, so that ones posted far ahead and then removed over and over
+     * don't pile up.
+     */
+    private void dropCancelledTasks() {
+        PriorityQueue<PostedRunnable> liveRunnables = new PriorityQueue<PostedRunnable>(Math.max(1, enqueuedTaskCount));
+        for (PostedRunnable postedRunnable : postedRunnables) {
+            if (!postedRunnable.cancelled) {
+                liveRunnables.add(postedRunnable);
+            }
+        }
+        postedRunnables = liveRunnables;
+        cancelledTaskCount = 0;
+    }
+
     class PostedRunnable implements Comparable<PostedRunnable> {
         Runnable runnable;
         long scheduledTime;
+        long sequenceNumber;
+        boolean cancelled;
 
-        PostedRunnable(Runnable runnable, long scheduledTime) {
+        PostedRunnable(Runnable runnable, long scheduledTime, long sequenceNumber) {
             this.runnable = runnable;
             this.scheduledTime = scheduledTime;
+            this.sequenceNumber = sequenceNumber;
         }
 
         @Override
         public int compareTo(PostedRunnable postedRunnable) {
-            return (int) (scheduledTime - postedRunnable.scheduledTime);
+            if (scheduledTime != postedRunnable.scheduledTime) {
+                return scheduledTime < postedRunnable.scheduledTime ? -1 : 1;
+            }
+            // runnables due at the same time run in the order they were posted
+            return sequenceNumber < postedRunnable.sequenceNumber ? -1 : (sequenceNumber == postedRunnable.sequenceNumber ? 0 : 1);
         }
 
         public void run() {
@@ -163,6 +344,6 @@ public class Scheduler {
     }
 
     private boolean nextTaskIsScheduledBefore(long endingTime) {
-        return enqueuedTaskCount() > 0 && postedRunnables.get(0).scheduledTime <= endingTime;
+        return enqueuedTaskCount() > 0 && peekNext().scheduledTime <= endingTime;
     }
 }
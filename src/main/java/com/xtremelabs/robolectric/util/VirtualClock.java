@@ -0,0 +1,121 @@
+package com.xtremelabs.robolectric.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual time shared by a number of {@link Scheduler}s, typically one per looper plus the background scheduler and
+ * anything else that runs on a timer. Between them the schedulers make up a single queue of runnables, partitioned by
+ * scheduler: each can still be run on its own, and {@link #advanceTo(long)} runs everything due in all of them in
+ * global order, by time and then by when it was posted.
+ * <p/>
+ * Advancing one scheduler moves the shared clock too, so runnables due in the others by then are left overdue, to run
+ * as soon as their own scheduler or the clock is next advanced.
+ */
+public class VirtualClock {
+    private final List<Scheduler> schedulers = new CopyOnWriteArrayList<Scheduler>();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicLong currentTime = new AtomicLong();
+    private final AtomicLong nextSequenceNumber = new AtomicLong();
+    private final AtomicLong nextFrontOfQueueSequenceNumber = new AtomicLong(-1);
+    private volatile long wallClockTimeAtStart = System.currentTimeMillis();
+
+    /**
+     * @return milliseconds of virtual time since the clock started
+     */
+    public long getCurrentTime() {
+        return currentTime.get();
+    }
+
+    /**
+     * @return the wall clock time, as the real clock read when this clock started plus the virtual time since
+     */
+    public long currentTimeMillis() {
+        return wallClockTimeAtStart + getCurrentTime();
+    }
+
+    public boolean advanceBy(long intervalMs) {
+        long now = getCurrentTime();
+        long endingTime = now + intervalMs;
+        if (intervalMs > 0 && endingTime < now) {
+            endingTime = Long.MAX_VALUE;
+        }
+        return advanceTo(endingTime);
+    }
+
+    /**
+     * Runs everything due by {@code endingTime} in every scheduler on this clock, including anything those runnables
+     * post that's due in time, and leaves the clock at {@code endingTime}.
+     *
+     * @return true if anything was run
+     */
+    public boolean advanceTo(long endingTime) {
+        if (endingTime < getCurrentTime()) {
+            return false;
+        }
+
+        int runCount = 0;
+        Scheduler scheduler;
+        while ((scheduler = schedulerWithNextTaskDueBy(endingTime)) != null) {
+            scheduler.runOneTask();
+            ++runCount;
+        }
+        moveTo(endingTime);
+
+        return runCount > 0;
+    }
+
+    /**
+     * Winds the clock back to zero and forgets its schedulers; they rejoin when they're next posted to.
+     */
+    public void reset() {
+        schedulers.clear();
+        generation.incrementAndGet();
+        currentTime.set(0);
+        wallClockTimeAtStart = System.currentTimeMillis();
+    }
+
+    int join(Scheduler scheduler) {
+        if (!schedulers.contains(scheduler)) {
+            schedulers.add(scheduler);
+        }
+        return generation.get();
+    }
+
+    int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Moves the clock to {@code time}, unless it has already passed it.
+     */
+    void moveTo(long time) {
+        long now;
+        while ((now = currentTime.get()) < time && !currentTime.compareAndSet(now, time)) {
+            // another thread moved it; look again
+        }
+    }
+
+    long nextSequenceNumber() {
+        return nextSequenceNumber.getAndIncrement();
+    }
+
+    long nextFrontOfQueueSequenceNumber() {
+        return nextFrontOfQueueSequenceNumber.getAndDecrement();
+    }
+
+    private Scheduler schedulerWithNextTaskDueBy(long endingTime) {
+        Scheduler nextScheduler = null;
+        Scheduler.PostedRunnable nextTask = null;
+        for (Scheduler scheduler : schedulers) {
+            Scheduler.PostedRunnable task = scheduler.peekNextTask();
+            if (task != null && task.scheduledTime <= endingTime && (nextTask == null || task.compareTo(nextTask) < 0)) {
+                nextScheduler = scheduler;
+                nextTask = task;
+            }
+        }
+        return nextScheduler;
+    }
+}
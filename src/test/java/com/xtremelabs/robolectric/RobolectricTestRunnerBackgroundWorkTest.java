@@ -0,0 +1,86 @@
+package com.xtremelabs.robolectric;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunNotifier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs test classes that leave work running on the background thread pool when they finish. The classes are loaded
+ * by their own Robolectric class loader, so what their work did is passed back through a system property.
+ */
+public class RobolectricTestRunnerBackgroundWorkTest {
+    private static final String FINISHED_PROPERTY = "robolectric.backgroundWorkTest.finished";
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(FINISHED_PROPERTY);
+    }
+
+    @Test(timeout = 10000)
+    public void shouldFinishBackgroundWorkBeforeMovingOn() throws Exception {
+        Result result = run(LeavesWorkRunning.class);
+
+        assertEquals(result.getFailures().toString(), 0, result.getFailureCount());
+        assertEquals("true", System.getProperty(FINISHED_PROPERTY));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldFailTheTestThatLeftFailingWorkRunning() throws Exception {
+        Result result = run(LeavesFailingWorkRunning.class);
+
+        assertEquals(1, result.getFailureCount());
+        assertEquals("in the background", result.getFailures().get(0).getException().getCause().getMessage());
+        assertEquals("true", System.getProperty(FINISHED_PROPERTY));
+    }
+
+    private static Result run(Class<?> testClass) throws Exception {
+        RunNotifier notifier = new RunNotifier();
+        Result result = new Result();
+        notifier.addListener(result.createListener());
+        new WithTestDefaultsRunner(testClass).run(notifier);
+        return result;
+    }
+
+    private static void leaveRunning(final Runnable work) {
+        Robolectric.getShadowApplication().setBackgroundThreadCount(1);
+        Robolectric.getShadowApplication().runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // long enough to still be running once the test method returns
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                System.setProperty(FINISHED_PROPERTY, "true");
+                work.run();
+            }
+        });
+    }
+
+    public static class LeavesWorkRunning {
+        @Test
+        public void shouldLeaveWorkRunning() throws Exception {
+            leaveRunning(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+    }
+
+    public static class LeavesFailingWorkRunning {
+        @Test
+        public void shouldLeaveFailingWorkRunning() throws Exception {
+            leaveRunning(new Runnable() {
+                @Override
+                public void run() {
+                    throw new RuntimeException("in the background");
+                }
+            });
+        }
+    }
+}
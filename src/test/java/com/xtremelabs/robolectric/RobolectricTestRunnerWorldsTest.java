@@ -0,0 +1,157 @@
+package com.xtremelabs.robolectric;
+
+import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.InitializationError;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.*;
+
+/**
+ * Sets up worlds directly rather than through the {@value RobolectricTestRunner#WORLDS_PROPERTY} system property,
+ * since the rest of the run has long since settled on its default loader.
+ */
+public class RobolectricTestRunnerWorldsTest {
+    private ClassLoader contextClassLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // runners point the thread that makes them at their world
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        RobolectricTestRunner.forgetWorlds();
+    }
+
+    @Test
+    public void shouldHandWorldsToTestClassesInTurn() throws Exception {
+        RobolectricClassLoader first = RobolectricTestRunner.getNextWorldLoader(2);
+        RobolectricClassLoader second = RobolectricTestRunner.getNextWorldLoader(2);
+        assertNotSame(first, second);
+
+        assertSame(first, RobolectricTestRunner.getNextWorldLoader(2));
+        assertSame(second, RobolectricTestRunner.getNextWorldLoader(2));
+        assertSame(first, RobolectricTestRunner.getNextWorldLoader(2));
+    }
+
+    @Test
+    public void eachWorldShouldHaveItsOwnShadowWranglerAndStatics() throws Exception {
+        RobolectricClassLoader first = RobolectricTestRunner.getNextWorldLoader(2);
+        RobolectricClassLoader second = RobolectricTestRunner.getNextWorldLoader(2);
+        assertNotSame(first.getClassHandler(), second.getClassHandler());
+        assertNotSame(ShadowWrangler.getInstance(), first.getClassHandler());
+        assertNotSame(ShadowWrangler.getInstance(), second.getClassHandler());
+
+        assertSuccessful(run(InWorld.class, first));
+        assertSuccessful(run(AlsoInWorld.class, second));
+
+        Object firstApplication = applicationIn(first);
+        Object secondApplication = applicationIn(second);
+        assertNotNull(firstApplication);
+        assertNotNull(secondApplication);
+        assertNotSame(firstApplication, secondApplication);
+        assertSame(first, firstApplication.getClass().getClassLoader());
+        assertSame(second, secondApplication.getClass().getClassLoader());
+    }
+
+    @Test(timeout = 60000)
+    public void testClassesSharingAWorldShouldTakeTurns() throws Exception {
+        RobolectricClassLoader world = RobolectricTestRunner.getNextWorldLoader(1);
+        assertSame(world, RobolectricTestRunner.getNextWorldLoader(1));
+
+        RunInThread firstRun = new RunInThread(newRunner(InWorld.class, world));
+        RunInThread secondRun = new RunInThread(newRunner(AlsoInWorld.class, world));
+        firstRun.start();
+        secondRun.start();
+        firstRun.join();
+        secondRun.join();
+
+        // each test fails if it sees the other running alongside it
+        assertSuccessful(firstRun.result);
+        assertSuccessful(secondRun.result);
+    }
+
+    @Test
+    public void classesToInstrumentShouldReachEveryWorld() throws Exception {
+        RobolectricClassLoader first = RobolectricTestRunner.getNextWorldLoader(2);
+        RobolectricTestRunner.addClassOrPackageToInstrument(CustomClass.class.getName());
+        RobolectricClassLoader second = RobolectricTestRunner.getNextWorldLoader(2);
+
+        assertNotNull(first.loadClass(CustomClass.class.getName()).getField(ShadowWrangler.SHADOW_FIELD_NAME));
+        assertNotNull(second.loadClass(CustomClass.class.getName()).getField(ShadowWrangler.SHADOW_FIELD_NAME));
+    }
+
+    private static RobolectricTestRunner newRunner(Class<?> testClass, RobolectricClassLoader world) throws InitializationError {
+        return new RobolectricTestRunner(testClass, world.getClassHandler(), world,
+                new RobolectricConfig(resourceFile("TestAndroidManifest.xml"), resourceFile("res"), resourceFile("assets")));
+    }
+
+    private static Result run(Class<?> testClass, RobolectricClassLoader world) throws InitializationError {
+        RunNotifier notifier = new RunNotifier();
+        Result result = new Result();
+        notifier.addListener(result.createListener());
+        newRunner(testClass, world).run(notifier);
+        return result;
+    }
+
+    private static Object applicationIn(RobolectricClassLoader world) throws Exception {
+        return world.loadClass(Robolectric.class.getName()).getField("application").get(null);
+    }
+
+    private static void assertSuccessful(Result result) {
+        assertEquals(result.getFailures().toString(), 0, result.getFailureCount());
+        assertEquals(1, result.getRunCount());
+    }
+
+    private static class RunInThread extends Thread {
+        private final RobolectricTestRunner runner;
+        private Result result;
+
+        RunInThread(RobolectricTestRunner runner) {
+            this.runner = runner;
+        }
+
+        @Override
+        public void run() {
+            RunNotifier notifier = new RunNotifier();
+            Result result = new Result();
+            notifier.addListener(result.createListener());
+            runner.run(notifier);
+            this.result = result;
+        }
+    }
+
+    public static class InWorld {
+        // one per world, like everything else loaded by its RobolectricClassLoader
+        static final AtomicInteger running = new AtomicInteger();
+
+        @Test
+        public void shouldHaveTheWorldToItself() throws Exception {
+            assertNotNull(Robolectric.application);
+            assertEquals(1, running.incrementAndGet());
+            try {
+                // long enough for a test class from the same world to turn up, if it could
+                Thread.sleep(500);
+                assertEquals(1, running.get());
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    public static class AlsoInWorld extends InWorld {
+    }
+
+    public static class CustomClass {
+    }
+}
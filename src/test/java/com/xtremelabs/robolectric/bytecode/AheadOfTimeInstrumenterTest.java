@@ -0,0 +1,113 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+public class AheadOfTimeInstrumenterTest {
+    private File inputJar;
+    private File outputJar;
+
+    @Before
+    public void setUp() throws Exception {
+        inputJar = File.createTempFile("android", ".jar");
+        outputJar = File.createTempFile("robolectric-preinstrumented", ".jar");
+
+        writeJar(inputJar, new ClassPool(true).makeClass("android.aot.Widget"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        inputJar.delete();
+        outputJar.delete();
+    }
+
+    @Test
+    public void shouldWriteInstrumentedVersionsOfMatchingClasses() throws Exception {
+        List<File> inputJars = Arrays.asList(inputJar);
+        int count = new AheadOfTimeInstrumenter(inputJars).instrument(inputJars, outputJar);
+        assertEquals(1, count);
+
+        PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(outputJar);
+        assertNotNull(preinstrumentedJar);
+        assertFalse(preinstrumentedJar.hasClass("org.example.NotAndroid"));
+        assertTrue(preinstrumentedJar.hasClass("android.aot.Widget"));
+
+        byte[] classBytes = preinstrumentedJar.getClassBytesFor("android.aot.Widget", new AndroidTranslator(null, null));
+        CtClass widget = new ClassPool(true).makeClass(new ByteArrayInputStream(classBytes));
+        assertNotNull(widget.getField(ShadowWrangler.SHADOW_FIELD_NAME));
+    }
+
+    @Test
+    public void shouldNotServeClassesWhoseRulesHaveChanged() throws Exception {
+        ClassPool classPool = new ClassPool(true);
+        CtClass base = classPool.makeClass("my.custom.Base");
+        writeJar(inputJar, base, classPool.makeClass("android.aot.Gadget", base));
+        List<File> inputJars = Arrays.asList(inputJar);
+        new AheadOfTimeInstrumenter(inputJars).instrument(inputJars, outputJar);
+        PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(outputJar);
+
+        AndroidTranslator customTranslator = new AndroidTranslator(null, null);
+        customTranslator.addCustomShadowClass("my.custom.Base");
+        assertNull(preinstrumentedJar.getClassBytesFor("android.aot.Gadget", customTranslator));
+
+        assertNotNull(preinstrumentedJar.getClassBytesFor("android.aot.Gadget", new AndroidTranslator(null, null)));
+    }
+
+    @Test
+    public void shouldStillServeClassesOnceUnrelatedCustomShadowClassesAreAdded() throws Exception {
+        List<File> inputJars = Arrays.asList(inputJar);
+        new AheadOfTimeInstrumenter(inputJars).instrument(inputJars, outputJar);
+        PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(outputJar);
+
+        AndroidTranslator customTranslator = new AndroidTranslator(null, null);
+        customTranslator.addCustomShadowClass("my.custom.Klazz");
+        assertNotNull(preinstrumentedJar.getClassBytesFor("android.aot.Widget", customTranslator));
+    }
+
+    @Test
+    public void shouldIgnoreJarsThatDoNotRecordTheirRules() throws Exception {
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(outputJar), PreinstrumentedJar.manifest());
+        addClass(jarOutputStream, new ClassPool(true).makeClass("android.aot.Widget"));
+        jarOutputStream.close();
+
+        assertNull(PreinstrumentedJar.open(outputJar));
+    }
+
+    @Test
+    public void shouldIgnoreMissingJars() throws Exception {
+        assertNull(PreinstrumentedJar.open(new File("no/such/robolectric-preinstrumented.jar")));
+    }
+
+    @Test
+    public void shouldIgnoreJarsFromOtherVersions() throws Exception {
+        assertNull(PreinstrumentedJar.open(inputJar));
+    }
+
+    private void writeJar(File jar, CtClass... classes) throws Exception {
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jar));
+        for (CtClass ctClass : classes) {
+            addClass(jarOutputStream, ctClass);
+        }
+        addClass(jarOutputStream, new ClassPool(true).makeClass("org.example.NotAndroid"));
+        jarOutputStream.close();
+    }
+
+    private void addClass(JarOutputStream jarOutputStream, CtClass ctClass) throws Exception {
+        jarOutputStream.putNextEntry(new JarEntry(ctClass.getName().replace('.', '/') + ".class"));
+        jarOutputStream.write(ctClass.toBytecode());
+        jarOutputStream.closeEntry();
+    }
+}
@@ -1,9 +1,15 @@
 package com.xtremelabs.robolectric.bytecode;
 
 import javassist.ClassPool;
+import javassist.CtClass;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -45,6 +51,108 @@ public class AndroidTranslatorUnitTest {
         assertTrue(androidTranslator.shouldInstrument(classPool.makeClass("my.custom.Klazz")));
     }
 
+    @Test
+    public void cacheKeyShouldDependOnTheOriginalClassBytes() throws Exception {
+        String objectKey = androidTranslator.cacheKeyFor(classPool, "java.lang.Object");
+        assertNotNull(objectKey);
+        assertEquals(objectKey, androidTranslator.cacheKeyFor(classPool, "java.lang.Object"));
+        assertFalse(objectKey.equals(androidTranslator.cacheKeyFor(classPool, "java.lang.String")));
+    }
+
+    @Test
+    public void cacheKeyShouldDependOnTheInstrumentationRulesForTheClass() throws Exception {
+        File classDir = writeClasses(classPool.makeClass("my.custom.Klazz"));
+        try {
+            classPool.appendClassPath(classDir.getPath());
+            String before = androidTranslator.cacheKeyFor(classPool, "my.custom.Klazz");
+            androidTranslator.addCustomShadowClass("my.custom.Klazz");
+            assertFalse(before.equals(androidTranslator.cacheKeyFor(classPool, "my.custom.Klazz")));
+        } finally {
+            delete(classDir);
+        }
+    }
+
+    @Test
+    public void cacheKeyShouldDependOnTheInstrumentationRulesForSuperclasses() throws Exception {
+        CtClass base = classPool.makeClass("my.custom.Base");
+        File classDir = writeClasses(base, classPool.makeClass("my.custom.Sub", base));
+        try {
+            classPool.appendClassPath(classDir.getPath());
+            String before = androidTranslator.cacheKeyFor(classPool, "my.custom.Sub");
+            androidTranslator.addCustomShadowClass("my.custom.Base");
+            assertFalse(before.equals(androidTranslator.cacheKeyFor(classPool, "my.custom.Sub")));
+        } finally {
+            delete(classDir);
+        }
+    }
+
+    @Test
+    public void cacheKeyShouldNotDependOnInstrumentationRulesForOtherClasses() throws Exception {
+        String before = androidTranslator.cacheKeyFor(classPool, "java.lang.String");
+        androidTranslator.addCustomShadowClass("my.custom.Klazz");
+        assertEquals(before, androidTranslator.cacheKeyFor(classPool, "java.lang.String"));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldWorkOutCacheKeysWhileCustomShadowClassesAreAdded() throws Exception {
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread prewarmer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        androidTranslator.cacheKeyFor(classPool, "java.lang.Object");
+                        androidTranslator.shouldInstrument(classPool.get("java.lang.String"));
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        prewarmer.start();
+        try {
+            for (int i = 0; i < 5000 && failure.get() == null; i++) {
+                androidTranslator.addCustomShadowClass("my.custom.Klazz" + i);
+            }
+        } finally {
+            done.set(true);
+        }
+        prewarmer.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void cacheKeyShouldOnlyRereadClassFilesThatHaveChanged() throws Exception {
+        File classDir = File.createTempFile("robolectric-classes", "");
+        classDir.delete();
+        File classFile = new File(classDir, "some/Klazz.class");
+        classFile.getParentFile().mkdirs();
+        try {
+            writeFile(classFile, new byte[]{1, 2, 3});
+            classFile.setLastModified(1000000000L);
+            classPool.appendClassPath(classDir.getPath());
+            String key = androidTranslator.cacheKeyFor(classPool, "some.Klazz");
+
+            // same size and timestamp, so it's taken to be the same file without reading it again
+            writeFile(classFile, new byte[]{4, 5, 6});
+            classFile.setLastModified(1000000000L);
+            assertEquals(key, androidTranslator.cacheKeyFor(classPool, "some.Klazz"));
+
+            classFile.setLastModified(2000000000L);
+            assertFalse(key.equals(androidTranslator.cacheKeyFor(classPool, "some.Klazz")));
+        } finally {
+            classFile.delete();
+            classFile.getParentFile().delete();
+            classDir.delete();
+        }
+    }
+
+    @Test
+    public void cacheKeyShouldBeNullForMissingClasses() throws Exception {
+        assertNull(androidTranslator.cacheKeyFor(classPool, "no.such.Klazz"));
+    }
+
     @Test
     public void testOnLoadWithNonInstrumentedClass() throws Exception {
         ClassHandler handler = mock(ClassHandler.class);
@@ -53,15 +161,46 @@ public class AndroidTranslatorUnitTest {
         AndroidTranslator translator = new AndroidTranslator(handler, cache);
 
         translator.onLoad(classPool, "java.lang.Object");
-        verify(cache).isWriting();
-        verifyNoMoreInteractions(cache);
+        verifyZeroInteractions(cache);
         verifyZeroInteractions(handler);
     }
 
-    @Test(expected = IllegalStateException.class)
-    public void shouldThrowIllegalStateIfClassCacheIsWriting() throws Exception {
+    @Test
+    public void onLoadShouldUseTheCacheKeyTheClassLoaderAlreadyWorkedOut() throws Exception {
         ClassCache cache = mock(ClassCache.class);
-        when(cache.isWriting()).thenReturn(true);
-        new AndroidTranslator(null, cache).onLoad(classPool, "java.lang.Object");
+        AndroidTranslator translator = new AndroidTranslator(mock(ClassHandler.class), cache);
+        classPool.makeClass("android.handed.Widget");
+
+        translator.useCacheKeyForNextLoad("android.handed.Widget", "handed-key");
+        translator.onLoad(classPool, "android.handed.Widget");
+        verify(cache).addClass(eq("android.handed.Widget"), eq("handed-key"), any(byte[].class));
+    }
+
+    private File writeClasses(CtClass... ctClasses) throws Exception {
+        File classDir = File.createTempFile("robolectric-classes", "");
+        classDir.delete();
+        for (CtClass ctClass : ctClasses) {
+            ctClass.writeFile(classDir.getPath());
+        }
+        return classDir;
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private void writeFile(File file, byte[] bytes) throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
     }
 }
@@ -0,0 +1,129 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.LoaderClassPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+public class CachePrewarmerTest {
+    private static final int WIDGET_COUNT = 20;
+
+    private File inputJar;
+    private File cacheFile;
+    private URLClassLoader sourceClassLoader;
+    private AndroidTranslator androidTranslator;
+    private ClassCache classCache;
+
+    @Before
+    public void setUp() throws Exception {
+        inputJar = File.createTempFile("android", ".jar");
+        cacheFile = File.createTempFile("robolectric-prewarm", ".cache");
+        cacheFile.delete();
+
+        ClassPool classPool = new ClassPool(true);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(inputJar));
+        CtClass baseWidget = classPool.makeClass("android.prewarm.Widget");
+        addClass(jarOutputStream, baseWidget);
+        for (int i = 0; i < WIDGET_COUNT; i++) {
+            addClass(jarOutputStream, classPool.makeClass("android.prewarm.Widget" + i, baseWidget));
+        }
+        addClass(jarOutputStream, classPool.makeClass("org.example.NotAndroid"));
+        jarOutputStream.close();
+
+        sourceClassLoader = new URLClassLoader(new URL[] {inputJar.toURI().toURL()}, getClass().getClassLoader());
+        androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        classCache = new ClassCache(cacheFile.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        inputJar.delete();
+        cacheFile.delete();
+    }
+
+    @Test
+    public void shouldInstrumentMatchingClassesIntoTheCache() throws Exception {
+        List<String> classNames = widgetClassNames();
+        classNames.add("org.example.NotAndroid");
+        classNames.add("android.prewarm.NoSuchWidget");
+
+        int count = new CachePrewarmer(androidTranslator, classCache, sourceClassLoader, 4).prewarm(classNames);
+        // more than one worker may instrument the superclass
+        assertTrue("instrumented " + count, count >= WIDGET_COUNT + 1);
+
+        ClassPool classPool = new ClassPool();
+        classPool.appendClassPath(new LoaderClassPath(sourceClassLoader));
+        ClassPool instrumentedClassPool = new ClassPool(true);
+        for (String className : widgetClassNames()) {
+            byte[] classBytes = classCache.getClassBytesFor(className, androidTranslator.cacheKeyFor(classPool, className));
+            assertNotNull(className, classBytes);
+            CtClass widget = instrumentedClassPool.makeClass(new ByteArrayInputStream(classBytes));
+            assertNotNull(widget.getField(ShadowWrangler.SHADOW_FIELD_NAME));
+        }
+        assertFalse(classCache.hasClass("org.example.NotAndroid"));
+    }
+
+    @Test
+    public void shouldInstrumentSubclassesTheSameWayTheClassLoaderDoes() throws Exception {
+        new CachePrewarmer(androidTranslator, classCache, sourceClassLoader, 4).prewarm(widgetClassNames());
+
+        File lazyCacheFile = File.createTempFile("robolectric-lazy", ".cache");
+        lazyCacheFile.delete();
+        try {
+            ClassCache lazyCache = new ClassCache(lazyCacheFile.getAbsolutePath());
+            ClassPool classPool = new ClassPool();
+            classPool.appendClassPath(new LoaderClassPath(sourceClassLoader));
+            // the class loader is asked for a subclass before the JVM asks it for the superclass
+            new AndroidTranslator(ShadowWrangler.getInstance(), lazyCache).onLoad(classPool, "android.prewarm.Widget3");
+
+            String cacheKey = androidTranslator.cacheKeyFor(classPool, "android.prewarm.Widget3");
+            byte[] prewarmedBytes = classCache.getClassBytesFor("android.prewarm.Widget3", cacheKey);
+            assertArrayEquals(lazyCache.getClassBytesFor("android.prewarm.Widget3", cacheKey), prewarmedBytes);
+
+            CtClass widget = new ClassPool(true).makeClass(new ByteArrayInputStream(prewarmedBytes));
+            for (CtField field : widget.getDeclaredFields()) {
+                assertFalse(ShadowWrangler.SHADOW_FIELD_NAME.equals(field.getName()));
+            }
+        } finally {
+            lazyCacheFile.delete();
+        }
+    }
+
+    @Test
+    public void shouldSkipClassesThatAreAlreadyCached() throws Exception {
+        new CachePrewarmer(androidTranslator, classCache, sourceClassLoader, 4).prewarm(widgetClassNames());
+
+        ClassCache reopenedCache = new ClassCache(cacheFile.getAbsolutePath());
+        assertEquals(0, new CachePrewarmer(androidTranslator, reopenedCache, sourceClassLoader, 4).prewarm(widgetClassNames()));
+    }
+
+    private List<String> widgetClassNames() {
+        List<String> classNames = new ArrayList<String>(Arrays.asList("android.prewarm.Widget"));
+        for (int i = 0; i < WIDGET_COUNT; i++) {
+            classNames.add("android.prewarm.Widget" + i);
+        }
+        return classNames;
+    }
+
+    private void addClass(JarOutputStream jarOutputStream, CtClass ctClass) throws Exception {
+        jarOutputStream.putNextEntry(new JarEntry(ctClass.getName().replace('.', '/') + ".class"));
+        jarOutputStream.write(ctClass.toBytecode());
+        jarOutputStream.closeEntry();
+    }
+}
@@ -1,124 +1,232 @@
 package com.xtremelabs.robolectric.bytecode;
 
-import org.junit.Assert;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
 public class ClassCacheTest {
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("robolectric-class-cache", ".cache");
+        cacheFile.delete();
+    }
 
+    @After
+    public void tearDown() throws Exception {
+        cacheFile.delete();
+        new File(cacheFile.getPath() + ".compacting").delete();
+    }
 
     @Test
-    public void fixForCorberturaAndSonarCodeCoverage() throws InterruptedException {
-        final ClassCache classCache = new ClassCache("target/test.txt", AndroidTranslator.CACHE_VERSION);
-        
-        // Substitute this LOCK with your monitor (could be you object you are
-        // testing etc.)
-        Thread locker = new Thread() {
-            @Override
-            public void run() {
-                synchronized (classCache) {
-                    try {
-                        Thread.sleep(Long.MAX_VALUE);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-                }
-            }
-        };
+    public void shouldReturnNullForUnknownClasses() throws Exception {
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertNull(classCache.getClassBytesFor("some.Unknown", "key"));
+        assertNull(classCache.getClassBufferFor("some.Unknown", "key"));
+    }
 
-        locker.start();
+    @Test
+    public void shouldServeClassesAddedInThisRun() throws Exception {
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        classCache.addClass("android.Foo", "key", new byte[]{1, 2, 3});
 
-        TestThreadIsWriting attempt = new TestThreadIsWriting(classCache);
-        
-        try {
-            int timeToWait = 500;
-            locker.join(timeToWait, 0);
-
-            attempt.start();
-            long before = System.currentTimeMillis();
-            attempt.join(timeToWait, 0);
-            long after = System.currentTimeMillis();
-            Assert.assertEquals(false, attempt.ready);
-            Assert.assertEquals(1, (after - before) / timeToWait);
-            locker.interrupt();
-        } finally {
-            
+        assertArrayEquals(new byte[]{1, 2, 3}, classCache.getClassBytesFor("android.Foo", "key"));
+    }
+
+    @Test
+    public void shouldReadClassesWrittenByAnEarlierRun() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "key", new byte[]{1, 2, 3});
+        new ClassCache(cacheFile.getPath()).addClass("android.Bar", "key", new byte[]{4, 5});
+
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertArrayEquals(new byte[]{1, 2, 3}, classCache.getClassBytesFor("android.Foo", "key"));
+        assertArrayEquals(new byte[]{4, 5}, classCache.getClassBytesFor("android.Bar", "key"));
+    }
+
+    @Test
+    public void shouldPickUpClassesAppendedByAnotherCacheWhenWriting() throws Exception {
+        ClassCache first = new ClassCache(cacheFile.getPath());
+        ClassCache second = new ClassCache(cacheFile.getPath());
+
+        first.addClass("android.Foo", "key", new byte[]{1});
+        second.addClass("android.Bar", "key", new byte[]{2});
+
+        assertArrayEquals(new byte[]{1}, second.getClassBytesFor("android.Foo", "key"));
+        ClassCache third = new ClassCache(cacheFile.getPath());
+        assertArrayEquals(new byte[]{1}, third.getClassBytesFor("android.Foo", "key"));
+        assertArrayEquals(new byte[]{2}, third.getClassBytesFor("android.Bar", "key"));
+    }
+
+    @Test
+    public void shouldMissWhenTheKeyDoesNotMatch() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "old-key", new byte[]{1, 2, 3});
+
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertTrue(classCache.hasClass("android.Foo"));
+        assertNull(classCache.getClassBytesFor("android.Foo", "new-key"));
+    }
+
+    @Test
+    public void laterEntriesShouldSupersedeEarlierOnesForTheSameClass() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "old-key", new byte[]{1, 2, 3});
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "new-key", new byte[]{4, 5, 6});
+
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertNull(classCache.getClassBytesFor("android.Foo", "old-key"));
+        assertArrayEquals(new byte[]{4, 5, 6}, classCache.getClassBytesFor("android.Foo", "new-key"));
+    }
+
+    @Test
+    public void shouldCompactTheFileOnceSupersededRecordsPassTheThreshold() throws Exception {
+        ClassCache classCache = new ClassCache(cacheFile.getPath(), 1000);
+        classCache.addClass("android.Bar", "key", new byte[]{7});
+        for (int i = 0; i < 100; i++) {
+            classCache.addClass("android.Foo", "key" + i, new byte[100]);
         }
+
+        assertTrue("cache file is " + cacheFile.length() + " bytes", cacheFile.length() < 2500);
+        assertFalse(new File(cacheFile.getPath() + ".compacting").exists());
+        ClassCache reopened = new ClassCache(cacheFile.getPath(), 1000);
+        assertArrayEquals(new byte[100], reopened.getClassBytesFor("android.Foo", "key99"));
+        assertArrayEquals(new byte[]{7}, reopened.getClassBytesFor("android.Bar", "key"));
     }
 
     @Test
-    public void fixForCorberturaAndSonarCodeCoverageTheOtherWayAround() throws InterruptedException {
-        final ClassCache classCache = new ClassCache("target/test.txt", AndroidTranslator.CACHE_VERSION);
-        
-        // Substitute this LOCK with your monitor (could be you object you are
-        // testing etc.)
-        Thread locker = new Thread() {
-            @Override
-            public void run() {
-                synchronized (classCache) {
-                    try {
-                        Thread.sleep(Long.MAX_VALUE);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-                }
-            }
-        };
+    public void cachesWithTheOldFileOpenShouldMoveOverToTheCompactedOne() throws Exception {
+        ClassCache compacting = new ClassCache(cacheFile.getPath(), 1000);
+        ClassCache other = new ClassCache(cacheFile.getPath(), 1000);
+        compacting.addClass("android.Bar", "key", new byte[]{7});
+        for (int i = 0; i < 100; i++) {
+            compacting.addClass("android.Foo", "key" + i, new byte[100]);
+        }
+
+        other.addClass("android.Baz", "key", new byte[]{8});
+        assertArrayEquals(new byte[100], other.getClassBytesFor("android.Foo", "key99"));
+
+        ClassCache reopened = new ClassCache(cacheFile.getPath(), 1000);
+        assertArrayEquals(new byte[]{8}, reopened.getClassBytesFor("android.Baz", "key"));
+        assertArrayEquals(new byte[100], reopened.getClassBytesFor("android.Foo", "key99"));
+        assertArrayEquals(new byte[]{7}, reopened.getClassBytesFor("android.Bar", "key"));
+    }
+
+    @Test
+    public void shouldDiscardFilesInAnOlderFormat() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        file.writeInt(0x526f626f);
+        file.writeInt(1);
+        file.writeInt(3);
+        file.write(new byte[]{'F', 'o', 'o'});
+        file.close();
+
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertFalse(classCache.hasClass("Foo"));
+        assertEquals(8, cacheFile.length());
+    }
 
-        locker.start();
+    @Test
+    public void shouldLeaveFilesInAnOlderFormatIntactForAnyoneWithThemMapped() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        file.writeInt(0x526f626f);
+        file.writeInt(1);
+        file.writeInt(3);
+        file.write(new byte[]{'F', 'o', 'o'});
+        ByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
 
-        TestThreadSaveAllClassesToCache attempt = new TestThreadSaveAllClassesToCache(classCache);
-        
         try {
-            int timeToWait = 500;
-            locker.join(timeToWait, 0);
-
-            attempt.start();
-            long before = System.currentTimeMillis();
-            attempt.join(timeToWait, 0);
-            long after = System.currentTimeMillis();
-            Assert.assertEquals(false, attempt.ready);
-            Assert.assertEquals(1, (after - before) / timeToWait);
-            locker.interrupt();
-                        
+            ClassCache classCache = new ClassCache(cacheFile.getPath());
+            classCache.addClass("android.Foo", "key", new byte[]{1});
+
+            assertEquals(15, file.length());
+            assertEquals(3, mapped.getInt(8));
+            assertEquals('o', mapped.get(14));
+            assertArrayEquals(new byte[]{1}, new ClassCache(cacheFile.getPath()).getClassBytesFor("android.Foo", "key"));
         } finally {
-            
+            file.close();
         }
     }
 
-    class TestThreadIsWriting extends  Thread {
-        public boolean ready = false;
-        final ClassCache classCache;
-        
-        
-        public TestThreadIsWriting(ClassCache classCache) {
-            super();
-            this.classCache = classCache;
-        }
+    @Test
+    public void shouldStopReadingAtARecordWithACorruptLength() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "key", new byte[]{1, 2, 3});
+        long goodLength = cacheFile.length();
 
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        file.seek(goodLength);
+        file.writeInt(Integer.MAX_VALUE);
+        file.write(new byte[]{'a', 'n', 'd', 'r', 'o', 'i', 'd'});
+        file.close();
 
-        @Override
-        public void run() {
-            classCache.isWriting();
-            ready = true;
-        }
-    };
-
-    class TestThreadSaveAllClassesToCache extends  Thread {
-        public boolean ready = false;
-        final ClassCache classCache;
-        
-        
-        public TestThreadSaveAllClassesToCache(ClassCache classCache) {
-            super();
-            this.classCache = classCache;
-        }
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertArrayEquals(new byte[]{1, 2, 3}, classCache.getClassBytesFor("android.Foo", "key"));
+
+        classCache.addClass("android.Bar", "key", new byte[]{4});
+        assertArrayEquals(new byte[]{4}, new ClassCache(cacheFile.getPath()).getClassBytesFor("android.Bar", "key"));
+    }
 
+    @Test
+    public void shouldIgnoreAndThenRepairATornRecord() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "key", new byte[]{1, 2, 3});
+        long goodLength = cacheFile.length();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        file.seek(goodLength);
+        file.writeInt(100);
+        file.write(new byte[]{'a', 'n'});
+        file.close();
+
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+        assertArrayEquals(new byte[]{1, 2, 3}, classCache.getClassBytesFor("android.Foo", "key"));
+
+        classCache.addClass("android.Bar", "key", new byte[]{4});
+        ClassCache reopened = new ClassCache(cacheFile.getPath());
+        assertArrayEquals(new byte[]{1, 2, 3}, reopened.getClassBytesFor("android.Foo", "key"));
+        assertArrayEquals(new byte[]{4}, reopened.getClassBytesFor("android.Bar", "key"));
+    }
 
-        @Override
-        public void run() {
-            classCache.saveAllClassesToCache(null, null);
-            ready = true;
+    @Test
+    public void classBuffersShouldBeIndependentOfEachOther() throws Exception {
+        new ClassCache(cacheFile.getPath()).addClass("android.Foo", "key", new byte[]{1, 2, 3});
+        ClassCache classCache = new ClassCache(cacheFile.getPath());
+
+        ByteBuffer first = classCache.getClassBufferFor("android.Foo", "key");
+        first.get();
+        ByteBuffer second = classCache.getClassBufferFor("android.Foo", "key");
+        assertEquals(3, second.remaining());
+        assertTrue(second.isReadOnly());
+    }
+
+    @Test
+    public void shouldAllowConcurrentWriters() throws Exception {
+        final ClassCache classCache = new ClassCache(cacheFile.getPath());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            final int threadNumber = i;
+            threads.add(new Thread() {
+                @Override public void run() {
+                    for (int j = 0; j < 50; j++) {
+                        classCache.addClass("android.Class" + threadNumber + "_" + j, "key", new byte[]{(byte) threadNumber, (byte) j});
+                    }
+                }
+            });
         }
-    };
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
 
+        ClassCache reopened = new ClassCache(cacheFile.getPath());
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 50; j++) {
+                assertArrayEquals(new byte[]{(byte) i, (byte) j}, reopened.getClassBytesFor("android.Class" + i + "_" + j, "key"));
+            }
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.util.MappedRecordStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassLoadManifestTest {
+    private File manifestFile;
+
+    @Before
+    public void setUp() throws Exception {
+        manifestFile = File.createTempFile("robolectric-class-load-manifest", ".cache");
+        manifestFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manifestFile.delete();
+    }
+
+    @Test
+    public void shouldRememberRecordedClassesInLoadOrder() throws Exception {
+        ClassLoadManifest manifest = new ClassLoadManifest(manifestFile.getAbsolutePath());
+        assertTrue(manifest.getClassNames().isEmpty());
+        manifest.record("android.view.View");
+        manifest.record("android.app.Activity");
+        manifest.record("android.view.View");
+
+        assertEquals(Arrays.asList("android.view.View", "android.app.Activity"),
+                new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames());
+    }
+
+    @Test
+    public void shouldOnlyAppendClassesNotAlreadyInTheManifest() throws Exception {
+        new ClassLoadManifest(manifestFile.getAbsolutePath()).record("android.view.View");
+        long length = manifestFile.length();
+
+        ClassLoadManifest manifest = new ClassLoadManifest(manifestFile.getAbsolutePath());
+        manifest.record("android.view.View");
+        assertEquals(length, manifestFile.length());
+
+        manifest.record("android.app.Activity");
+        assertEquals(Arrays.asList("android.view.View", "android.app.Activity"),
+                new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames());
+    }
+
+    @Test
+    public void shouldIgnoreClassesRecordedByOtherVersions() throws Exception {
+        new MappedRecordStore(manifestFile.getAbsolutePath()).put("android.view.View", "1", new byte[0]);
+
+        ClassLoadManifest manifest = new ClassLoadManifest(manifestFile.getAbsolutePath());
+        assertTrue(manifest.getClassNames().isEmpty());
+
+        manifest.record("android.view.View");
+        assertEquals(Arrays.asList("android.view.View"),
+                new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames());
+    }
+
+    @Test
+    public void shouldDiscardManifestsInAnOlderFormat() throws Exception {
+        write("# robolectric class load manifest, version 1\nandroid.view.View\n");
+
+        assertTrue(new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames().isEmpty());
+        assertTrue(new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames().isEmpty());
+    }
+
+    @Test
+    public void shouldDropATornLastRecord() throws Exception {
+        ClassLoadManifest manifest = new ClassLoadManifest(manifestFile.getAbsolutePath());
+        manifest.record("android.view.View");
+        append("android.app.Activ");
+
+        manifest = new ClassLoadManifest(manifestFile.getAbsolutePath());
+        assertEquals(Arrays.asList("android.view.View"), manifest.getClassNames());
+
+        manifest.record("android.app.Activity");
+        assertEquals(Arrays.asList("android.view.View", "android.app.Activity"),
+                new ClassLoadManifest(manifestFile.getAbsolutePath()).getClassNames());
+    }
+
+    private void write(String contents) throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(manifestFile);
+        outputStream.write(contents.getBytes("UTF-8"));
+        outputStream.close();
+    }
+
+    private void append(String contents) throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(manifestFile, true);
+        outputStream.write(contents.getBytes("UTF-8"));
+        outputStream.close();
+    }
+}
@@ -21,8 +21,10 @@ public class MethodGeneratorTest {
                 ctClass.getDeclaredMethod("substring", new CtClass[]{CtClass.intType}),
                 ctClass, Type.OBJECT, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.String.class, \"substring\", new String[] {\"int\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return null;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"substring\", this, new String[] {\"int\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  __callSite0__, this, $1);\n" +
                 "if (x != null) return ((java.lang.String) x);\n" +
                 "return null;\n" +
                 "}\n", methodBody);
@@ -35,8 +37,10 @@ public class MethodGeneratorTest {
                 ctClass.getDeclaredMethod("length"),
                 ctClass, Type.OBJECT, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.String.class, \"length\", new String[0]);\n" +
+                "if (__callSite0__.isUnshadowed()) return null;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"length\", this, new String[0], new Object[0]);\n" +
+                "  __callSite0__, this);\n" +
                 "if (x != null) return ((java.lang.String) x);\n" +
                 "return null;\n" +
                 "}\n", methodBody);
@@ -49,8 +53,11 @@ public class MethodGeneratorTest {
                 ctClass.getDeclaredMethod("wait"),
                 ctClass, Type.VOID, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.Object.class, \"wait\", new String[] {\"long\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return;\n" +
+                "if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.hasShadowMethod(__callSite0__, this)) return;\n" +
                 "com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.Object.class, \"wait\", this, new String[] {\"long\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  __callSite0__, this, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
                 "return;\n" +
                 "}\n", methodBody);
     }
@@ -62,13 +69,49 @@ public class MethodGeneratorTest {
                 ctClass.getDeclaredMethod("valueOf", new CtClass[]{CtClass.intType}),
                 ctClass, Type.OBJECT, true, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(java.lang.String.class)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.String.class, \"valueOf\", new String[] {\"int\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return null;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"valueOf\", null, new String[] {\"int\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  __callSite0__, null, $1);\n" +
                 "if (x != null) return ((java.lang.String) x);\n" +
                 "return null;\n" +
                 "}\n", methodBody);
     }
 
+    @Test
+    public void whenMethodHasParams_shouldOnlyBoxThemIfThereIsAShadowMethod() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        String methodBody = new MethodGenerator(ctClass).generateMethodBody(
+                ctClass.getDeclaredMethod("substring", new CtClass[]{CtClass.intType, CtClass.intType}),
+                ctClass, Type.OBJECT, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.String.class, \"substring\", new String[] {\"int\", \"int\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return null;\n" +
+                "if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.hasShadowMethod(__callSite0__, this)) return null;\n" +
+                "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
+                "  __callSite0__, this, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1), com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($2)});\n" +
+                "if (x != null) return ((java.lang.String) x);\n" +
+                "return null;\n" +
+                "}\n", methodBody);
+    }
+
+    @Test
+    public void whenMethodHasManyParams_shouldPassAParamArray() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        String methodBody = new MethodGenerator(ctClass).generateMethodBody(
+                ctClass.getDeclaredMethod("regionMatches", new CtClass[]{CtClass.intType, ctClass, CtClass.intType, CtClass.intType}),
+                ctClass, Type.BOOLEAN, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.String.class, \"regionMatches\", new String[] {\"int\", \"java.lang.String\", \"int\", \"int\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return false;\n" +
+                "if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.hasShadowMethod(__callSite0__, this)) return false;\n" +
+                "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
+                "  __callSite0__, this, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1), com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($2), com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($3), com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($4)});\n" +
+                "if (x != null) return ((java.lang.Boolean) x).booleanValue();\n" +
+                "return false;\n" +
+                "}\n", methodBody);
+    }
+
     @Test
     public void shouldGenerateParameterList() throws Exception {
         MethodGenerator methodGenerator = new MethodGenerator(classPool.getCtClass(Object.class.getName()));
@@ -84,9 +127,12 @@ public class MethodGeneratorTest {
                 ctClass.getDeclaredMethod("equals", new CtClass[]{ctClass}),
                 ctClass, Type.BOOLEAN, false, true);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite0__ == null) __callSite0__ = new com.xtremelabs.robolectric.bytecode.ShadowCallSite(java.lang.Object.class, \"equals\", new String[] {\"java.lang.Object\"});\n" +
+                "if (__callSite0__.isUnshadowed()) return super.equals($1);\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.Object.class, \"equals\", this, new String[] {\"java.lang.Object\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  __callSite0__, this, $1);\n" +
                 "if (x != null) return ((java.lang.Boolean) x).booleanValue();\n" +
-                "return super.equals($1);}\n", methodBody);
+                "return super.equals($1);\n" +
+                "}\n", methodBody);
     }
 }
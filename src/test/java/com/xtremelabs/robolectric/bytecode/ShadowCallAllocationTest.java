@@ -0,0 +1,192 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.internal.Implementation;
+import com.xtremelabs.robolectric.internal.Implements;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes the current thread allocates while making calls the way generated code does, to keep the common
+ * calls allocation-free. Skipped on JVMs that can't count allocations per thread.
+ */
+public class ShadowCallAllocationTest {
+    private static final int CALLS = 100000;
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private ShadowWrangler shadowWrangler;
+    private Widget widget;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        assumeTrue(((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).isThreadAllocatedMemoryEnabled());
+
+        shadowWrangler = new ShadowWrangler();
+        shadowWrangler.bindShadowClass(Widget.class, ShadowWidget.class);
+        widget = new Widget();
+    }
+
+    @Test
+    public void callsWithNoShadowMethodToGoToShouldNotAllocate() throws Throwable {
+        final ShadowCallSite callSite = new ShadowCallSite(Widget.class, "setColor", new String[] {"int"});
+        long bytes = bytesAllocatedBy(new Call() {
+            @Override
+            public void make() throws Throwable {
+                if (shadowWrangler.hasShadowMethod(callSite, widget)) {
+                    shadowWrangler.methodInvoked(callSite, widget, new Object[] {RobolectricInternals.autobox(1000)});
+                }
+            }
+        });
+        assertEquals(0, bytes / CALLS);
+    }
+
+    @Test
+    public void callsToShadowMethodsWithoutParamsShouldNotAllocate() throws Throwable {
+        final ShadowCallSite callSite = new ShadowCallSite(Widget.class, "getName", new String[0]);
+        long bytes = bytesAllocatedBy(new Call() {
+            @Override
+            public void make() throws Throwable {
+                assertEquals("shadow widget", shadowWrangler.methodInvoked(callSite, widget, NO_PARAMS));
+            }
+        });
+        assertEquals(0, bytes / CALLS);
+    }
+
+    @Test
+    public void callsToShadowMethodsWithAnIntParamShouldNotAllocate() throws Throwable {
+        final ShadowCallSite callSite = new ShadowCallSite(Widget.class, "setSize", new String[] {"int"});
+        long bytes = bytesAllocatedBy(new Call() {
+            @Override
+            public void make() throws Throwable {
+                // small enough for Integer's cache, like View.GONE; bigger ints are still boxed for Method.invoke()
+                shadowWrangler.methodInvoked(callSite, widget, 8);
+            }
+        });
+        assertEquals(0, bytes / CALLS);
+        assertEquals(8, ((ShadowWidget) shadowWrangler.shadowOf(widget)).size);
+    }
+
+    @Test
+    public void callsToShadowMethodsWithAnObjectParamShouldNotAllocate() throws Throwable {
+        final ShadowCallSite callSite = new ShadowCallSite(Widget.class, "setLabel", new String[] {"java.lang.String"});
+        long bytes = bytesAllocatedBy(new Call() {
+            @Override
+            public void make() throws Throwable {
+                shadowWrangler.methodInvoked(callSite, widget, (Object) "label");
+            }
+        });
+        assertEquals(0, bytes / CALLS);
+        assertEquals("label", ((ShadowWidget) shadowWrangler.shadowOf(widget)).label);
+    }
+
+    @Test
+    public void callsToShadowMethodsWithParamsShouldStillReachTheShadow() throws Throwable {
+        ShadowCallSite callSite = new ShadowCallSite(Widget.class, "setSize", new String[] {"int"});
+        assertTrue(shadowWrangler.hasShadowMethod(callSite, widget));
+        shadowWrangler.methodInvoked(callSite, widget, new Object[] {RobolectricInternals.autobox(1000)});
+        assertEquals(1000, ((ShadowWidget) shadowWrangler.shadowOf(widget)).size);
+    }
+
+    @Test
+    public void callsAlternatingBetweenShadowSubclassesShouldNotAllocate() throws Throwable {
+        shadowWrangler.bindShadowClass(RedWidget.class, ShadowRedWidget.class);
+        shadowWrangler.bindShadowClass(BlueWidget.class, ShadowBlueWidget.class);
+        final Widget redWidget = new RedWidget();
+        final Widget blueWidget = new BlueWidget();
+        final ShadowCallSite callSite = new ShadowCallSite(Widget.class, "getName", new String[0]);
+        long bytes = bytesAllocatedBy(new Call() {
+            @Override
+            public void make() throws Throwable {
+                assertEquals("shadow red widget", shadowWrangler.methodInvoked(callSite, redWidget, NO_PARAMS));
+                assertEquals("shadow blue widget", shadowWrangler.methodInvoked(callSite, blueWidget, NO_PARAMS));
+            }
+        });
+        assertEquals(0, bytes / CALLS);
+    }
+
+    private long bytesAllocatedBy(Call call) throws Throwable {
+        // once to bind the call site and let reflection settle on its accessors, once to measure
+        for (int i = 0; i < CALLS; i++) {
+            call.make();
+        }
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            call.make();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private interface Call {
+        void make() throws Throwable;
+    }
+
+    public static class Widget {
+        public Object __shadow__;
+
+        public String getName() {
+            return "widget";
+        }
+
+        public void setColor(int color) {
+        }
+
+        public void setSize(int size) {
+        }
+
+        public void setLabel(String label) {
+        }
+    }
+
+    @Implements(Widget.class)
+    public static class ShadowWidget {
+        int size;
+        String label;
+
+        @Implementation
+        public String getName() {
+            return "shadow widget";
+        }
+
+        @Implementation
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        @Implementation
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    public static class RedWidget extends Widget {
+    }
+
+    public static class BlueWidget extends Widget {
+    }
+
+    @Implements(RedWidget.class)
+    public static class ShadowRedWidget extends ShadowWidget {
+        @Override
+        @Implementation
+        public String getName() {
+            return "shadow red widget";
+        }
+    }
+
+    @Implements(BlueWidget.class)
+    public static class ShadowBlueWidget extends ShadowWidget {
+        @Override
+        @Implementation
+        public String getName() {
+            return "shadow blue widget";
+        }
+    }
+}
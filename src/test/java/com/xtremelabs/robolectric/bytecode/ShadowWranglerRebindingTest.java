@@ -0,0 +1,101 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.internal.Implementation;
+import com.xtremelabs.robolectric.internal.Implements;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises call site bindings directly, without instrumentation, so it can see what they're bound to.
+ */
+public class ShadowWranglerRebindingTest {
+    private ShadowWrangler shadowWrangler;
+    private ShadowCallSite callSite;
+
+    @Before
+    public void setUp() throws Exception {
+        shadowWrangler = new ShadowWrangler();
+        callSite = new ShadowCallSite(Greeter.class, "greet", new String[0]);
+    }
+
+    @Test
+    public void shouldKeepCallSiteBindingsWhenTheSameShadowsAreBoundForTheNextTest() throws Throwable {
+        shadowWrangler.bindShadowClass(Greeter.class, ShadowGreeter.class);
+        assertEquals("shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        Object binding = callSite.binding;
+
+        shadowWrangler.beforeTest();
+        shadowWrangler.bindShadowClass(Greeter.class, ShadowGreeter.class);
+        assertEquals("shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        assertSame(binding, callSite.binding);
+    }
+
+    @Test
+    public void shouldRebindCallSitesWhenDifferentShadowsAreBound() throws Throwable {
+        shadowWrangler.bindShadowClass(Greeter.class, ShadowGreeter.class);
+        assertEquals("shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+
+        shadowWrangler.beforeTest();
+        shadowWrangler.bindShadowClass(Greeter.class, OtherShadowGreeter.class);
+        assertEquals("other shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+
+        shadowWrangler.beforeTest();
+        assertNull(shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        assertTrue(callSite.isUnshadowed());
+    }
+
+    @Test
+    public void shouldBindShadowClassesByName() throws Throwable {
+        Map<String, String> shadowClassNames = new HashMap<String, String>();
+        shadowClassNames.put(Greeter.class.getName(), ShadowGreeter.class.getName());
+        shadowWrangler.bindShadowClasses(shadowClassNames);
+        assertEquals("shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        Object binding = callSite.binding;
+
+        shadowWrangler.beforeTest();
+        shadowWrangler.bindShadowClasses(shadowClassNames);
+        assertEquals("shadow hello", shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        assertSame(binding, callSite.binding);
+    }
+
+    @Test
+    public void shouldCheckUnshadowedCallSitesAgainAfterBindingsChange() throws Throwable {
+        assertNull(shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        assertTrue(callSite.isUnshadowed());
+
+        shadowWrangler.bindShadowClass(Greeter.class, ShadowGreeter.class);
+        assertFalse(callSite.isUnshadowed());
+
+        shadowWrangler.beforeTest();
+        assertFalse(callSite.isUnshadowed());
+        assertNull(shadowWrangler.methodInvoked(callSite, null, new Object[0]));
+        assertTrue(callSite.isUnshadowed());
+    }
+
+    public static class Greeter {
+        public static String greet() {
+            return "hello";
+        }
+    }
+
+    @Implements(Greeter.class)
+    public static class ShadowGreeter {
+        @Implementation
+        public static String greet() {
+            return "shadow hello";
+        }
+    }
+
+    @Implements(Greeter.class)
+    public static class OtherShadowGreeter {
+        @Implementation
+        public static String greet() {
+            return "other shadow hello";
+        }
+    }
+}
@@ -109,6 +109,50 @@ public class ShadowWranglerTest {
         assertThat(shadowOf(textFoo), instanceOf(ShadowTextFoo.class));
     }
 
+    @Test
+    public void shouldNoticeShadowBindingsChangingAfterAMethodHasBeenCalled() throws Exception {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        assertSame(name, new Foo(name).getName());
+
+        Robolectric.bindShadowClass(ExceptionThrowingShadowFoo.class);
+        Exception e = null;
+        try {
+            new Foo(name).getName();
+        } catch (Exception e1) {
+            e = e1;
+        }
+        assertNotNull(e);
+        assertEquals(IOException.class, e.getClass());
+    }
+
+    @Test
+    public void shouldReuseInvocationPlansForTheClassAndMethodNameEntryPoint() throws Throwable {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        Foo foo = new Foo(name);
+        ShadowWrangler shadowWrangler = RobolectricInternals.getShadowWrangler();
+
+        assertSame(name, shadowWrangler.methodInvoked(Foo.class, "getName", foo, new String[0], new Object[0]));
+        assertSame(name, shadowWrangler.methodInvoked(Foo.class, "getName", foo, new String[0], new Object[0]));
+
+        Robolectric.bindShadowClass(ShadowFoo_WithDefaultConstructorAndNoConstructorDelegate.class);
+        Foo otherFoo = new Foo(name);
+        assertNull(shadowWrangler.methodInvoked(Foo.class, "getName", otherFoo, new String[0], new Object[0]));
+    }
+
+    @Test
+    public void shouldMarkCallSitesWithNoShadowAsUnshadowedUntilBindingsChange() throws Throwable {
+        Foo foo = new Foo(name);
+        ShadowCallSite callSite = new ShadowCallSite(Foo.class, "getName", new String[0]);
+        ShadowWrangler shadowWrangler = RobolectricInternals.getShadowWrangler();
+
+        assertNull(shadowWrangler.methodInvoked(callSite, foo, new Object[0]));
+        assertTrue(callSite.isUnshadowed());
+
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        assertFalse(callSite.isUnshadowed());
+        assertSame(name, foo.getName());
+    }
+
     @Test
     public void testPrimitiveArrays() throws Exception {
         Class<?> objArrayClass = ShadowWrangler.loadClass("java.lang.Object[]", getClass().getClassLoader());
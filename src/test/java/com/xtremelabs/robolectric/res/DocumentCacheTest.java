@@ -0,0 +1,112 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileWriter;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DocumentCacheTest {
+    private File cacheFile;
+    private DocumentBuilder documentBuilder;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("robolectric-resource-documents", ".cache");
+        cacheFile.delete();
+
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        documentBuilderFactory.setIgnoringComments(true);
+        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+        documentBuilder = documentBuilderFactory.newDocumentBuilder();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cacheFile.delete();
+    }
+
+    @Test
+    public void shouldRebuildTheSameDocumentsInAnotherInstance() throws Exception {
+        File[] xmlFiles = {
+                resourceFile("res", "values", "strings.xml"),
+                resourceFile("res", "values", "attrs.xml"),
+                resourceFile("res", "layout", "main.xml"),
+                resourceFile("res", "menu", "test.xml"),
+                resourceFile("res", "xml", "preferences.xml"),
+                resourceFile("res", "drawable", "animation_list.xml")
+        };
+
+        DocumentCache documentCache = new DocumentCache(cacheFile.getAbsolutePath());
+        for (File xmlFile : xmlFiles) {
+            documentCache.addDocument(xmlFile, documentBuilder.parse(xmlFile));
+        }
+
+        DocumentCache otherDocumentCache = new DocumentCache(cacheFile.getAbsolutePath());
+        for (File xmlFile : xmlFiles) {
+            Document cachedDocument = otherDocumentCache.getDocument(xmlFile, documentBuilder);
+            assertNotNull(xmlFile.getPath(), cachedDocument);
+            assertEquals(dump(documentBuilder.parse(xmlFile)), dump(cachedDocument));
+        }
+    }
+
+    @Test
+    public void shouldMissWhenTheFileHasChanged() throws Exception {
+        File xmlFile = File.createTempFile("strings", ".xml");
+        try {
+            write(xmlFile, "<resources><string name=\"hello\">Hello</string></resources>");
+            DocumentCache documentCache = new DocumentCache(cacheFile.getAbsolutePath());
+            documentCache.addDocument(xmlFile, documentBuilder.parse(xmlFile));
+            assertNotNull(documentCache.getDocument(xmlFile, documentBuilder));
+
+            write(xmlFile, "<resources><string name=\"hello\">Hello, World</string></resources>");
+            xmlFile.setLastModified(xmlFile.lastModified() + 2000);
+            assertNull(documentCache.getDocument(xmlFile, documentBuilder));
+            assertNull(new DocumentCache(cacheFile.getAbsolutePath()).getDocument(xmlFile, documentBuilder));
+        } finally {
+            xmlFile.delete();
+        }
+    }
+
+    private void write(File file, String contents) throws Exception {
+        FileWriter writer = new FileWriter(file);
+        writer.write(contents);
+        writer.close();
+    }
+
+    private String dump(Node node) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(node.getNodeType()).append(' ')
+                .append(node.getNamespaceURI()).append(' ')
+                .append(node.getPrefix()).append(' ')
+                .append(node.getLocalName()).append(' ')
+                .append(node.getNodeName()).append(' ')
+                .append(node.getNodeValue()).append('\n');
+
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                builder.append("  @").append(dump(attributes.item(i)));
+            }
+        }
+
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            builder.append(dump(children.item(i)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DocumentLoaderTest {
+    @Test
+    public void shouldOnlyParseEachFileOnceForLoadersSharingParsedDocuments() throws Exception {
+        Map<File, Document> parsedDocuments = new HashMap<File, Document>();
+        RecordingXmlLoader firstPass = new RecordingXmlLoader();
+        RecordingXmlLoader secondPass = new RecordingXmlLoader();
+
+        new DocumentLoader(parsedDocuments, firstPass).loadResourceXmlDir(resourceFile("res", "values"));
+        new DocumentLoader(parsedDocuments, secondPass).loadResourceXmlDir(resourceFile("res", "values"));
+
+        assertEquals(resourceFile("res", "values").listFiles().length, firstPass.documents.size());
+        assertEquals(firstPass.documents.size(), parsedDocuments.size());
+        for (Map.Entry<File, Document> entry : firstPass.documents.entrySet()) {
+            assertSame(entry.getValue(), secondPass.documents.get(entry.getKey()));
+        }
+    }
+
+    private static class RecordingXmlLoader extends XmlLoader {
+        private final Map<File, Document> documents = new HashMap<File, Document>();
+
+        RecordingXmlLoader() {
+            super(null);
+        }
+
+        @Override
+        protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
+            documents.put(xmlFile, document);
+        }
+    }
+}
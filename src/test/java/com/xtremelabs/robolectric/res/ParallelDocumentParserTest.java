@@ -0,0 +1,61 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelDocumentParserTest {
+    @Test
+    public void shouldParseEveryXmlFileInTheGivenDirectories() throws Exception {
+        File valuesDir = resourceFile("res", "values");
+        File layoutDir = resourceFile("res", "layout");
+
+        Map<File, Document> parsedDocuments = new ParallelDocumentParser(4).parse(Arrays.asList(valuesDir, layoutDir, null));
+
+        assertEquals(valuesDir.listFiles(DocumentLoader.XML_FILE_FILTER).length + layoutDir.listFiles(DocumentLoader.XML_FILE_FILTER).length,
+                parsedDocuments.size());
+        Document strings = parsedDocuments.get(new File(valuesDir, "strings.xml"));
+        assertEquals("resources", strings.getDocumentElement().getNodeName());
+    }
+
+    @Test
+    public void shouldLeaveFilesThatDontParseForTheirLoader() throws Exception {
+        File dir = File.createTempFile("robolectric-res", "");
+        dir.delete();
+        dir.mkdir();
+        File good = new File(dir, "good.xml");
+        File bad = new File(dir, "bad.xml");
+        try {
+            write(good, "<resources/>");
+            write(bad, "<resources>");
+
+            Map<File, Document> parsedDocuments = new ParallelDocumentParser(2).parse(Arrays.asList(dir));
+            assertTrue(parsedDocuments.containsKey(good));
+            assertFalse(parsedDocuments.containsKey(bad));
+        } finally {
+            good.delete();
+            bad.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void shouldLeaveParsingToTheLoadersWhenSingleThreaded() throws Exception {
+        assertTrue(new ParallelDocumentParser(1).parse(Arrays.asList(resourceFile("res", "values"))).isEmpty());
+    }
+
+    private void write(File file, String contents) throws Exception {
+        FileWriter writer = new FileWriter(file);
+        writer.write(contents);
+        writer.close();
+    }
+}
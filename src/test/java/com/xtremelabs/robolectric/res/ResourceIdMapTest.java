@@ -0,0 +1,43 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceIdMapTest {
+    @Test
+    public void shouldStoreValuesById() throws Exception {
+        ResourceIdMap<String> map = new ResourceIdMap<String>();
+        map.put(0x7f030000, "layout/main");
+        map.put(0, "zero");
+        map.put(-1, "minus one");
+
+        assertEquals("layout/main", map.get(0x7f030000));
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertNull(map.get(0x7f030001));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    public void shouldReplaceAndGrow() throws Exception {
+        ResourceIdMap<String> map = new ResourceIdMap<String>();
+        map.put(0x7f030000, "layout/main");
+        map.put(0x7f030000, "layout/other");
+        assertEquals(1, map.size());
+        assertEquals("layout/other", map.get(0x7f030000));
+
+        for (int id = 0x7f050000; id < 0x7f050000 + 100000; id++) {
+            map.put(id, "id/" + id);
+        }
+        assertEquals(100001, map.size());
+        for (int id = 0x7f050000; id < 0x7f050000 + 100000; id++) {
+            assertEquals("id/" + id, map.get(id));
+        }
+        assertEquals("layout/other", map.get(0x7f030000));
+    }
+}
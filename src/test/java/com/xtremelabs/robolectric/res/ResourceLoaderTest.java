@@ -42,6 +42,43 @@ public class ResourceLoaderTest {
         assertEquals("Local Copy", stringValue);
     }
 
+    @Test
+    public void shouldSwitchBetweenValuesQualifiers() throws Exception {
+        ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
+        assertEquals("Hello", resourceLoader.getStringValue(R.string.hello));
+
+        resourceLoader.reloadValuesResouces("fr");
+        assertEquals("Bonjour", resourceLoader.getStringValue(R.string.hello));
+        assertEquals("Local Copy", resourceLoader.getStringValue(R.string.copy));
+        assertEquals("Copy", resourceLoader.getStringValue(android.R.string.copy));
+
+        resourceLoader.reloadValuesResouces("");
+        assertEquals("Hello", resourceLoader.getStringValue(R.string.hello));
+
+        resourceLoader.reloadValuesResouces("fr");
+        assertEquals("Bonjour", resourceLoader.getStringValue(R.string.hello));
+    }
+
+    @Test
+    public void shouldUseTheDefaultsForValuesAQualifierDoesntDefine() throws Exception {
+        ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
+        resourceLoader.reloadValuesResouces("fr");
+
+        assertEquals(0x000000, resourceLoader.getColorValue(R.color.black));
+        assertEquals(8f, resourceLoader.getDimenValue(R.dimen.test_dp_dimen), 0f);
+        assertEquals(2000, resourceLoader.getIntegerValue(R.integer.test_integer1));
+        assertEquals("One beer", resourceLoader.getPluralStringValue(R.plurals.beer, 1));
+        assertArrayEquals(new String[] {"foo", "bar"}, resourceLoader.getStringArrayValue(R.array.items));
+    }
+
+    @Test
+    public void shouldApplyValuesQualifiersChosenBeforeValuesAreLoaded() throws Exception {
+        ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
+        resourceLoader.reloadValuesResouces("fr");
+        assertEquals("Bonjour", resourceLoader.getStringValue(R.string.hello));
+        assertEquals("Local Copy", resourceLoader.getStringValue(R.string.copy));
+    }
+
     @Test(expected=I18nException.class)
     public void shouldThrowExceptionOnI18nStrictModeInflateView() throws Exception {
         ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("layout"));
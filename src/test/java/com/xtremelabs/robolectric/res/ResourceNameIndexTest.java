@@ -0,0 +1,56 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResourceNameIndexTest {
+    private ResourceNameIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new ResourceNameIndex();
+        index.put("layout/main", 0x7f030000);
+        index.put("id/title", 0x7f050001);
+        index.put("android:id/text1", 0x01020014);
+    }
+
+    @Test
+    public void shouldFindNames() throws Exception {
+        assertEquals(Integer.valueOf(0x7f030000), index.get("layout/main"));
+        assertEquals(Integer.valueOf(0x01020014), index.get("android:id/text1"));
+        assertNull(index.get("layout/other"));
+        assertNull(index.get("layout/mai"));
+    }
+
+    @Test
+    public void shouldFindNamesPartWayIntoAString() throws Exception {
+        assertEquals(Integer.valueOf(0x7f050001), index.get("@+id/title", 2));
+        assertEquals(Integer.valueOf(0x7f030000), index.get("@layout/main", 1));
+        assertEquals(Integer.valueOf(0x01020014), index.get("@+android:id/text1", 2));
+        assertNull(index.get("@+id/title", 1));
+    }
+
+    @Test
+    public void shouldReturnTheSameIdEveryTime() throws Exception {
+        assertSame(index.get("@+id/title", 2), index.get("id/title"));
+    }
+
+    @Test
+    public void shouldReplaceAndGrow() throws Exception {
+        index.put("id/title", 42);
+        assertEquals(Integer.valueOf(42), index.get("id/title"));
+
+        for (int i = 0; i < 10000; i++) {
+            index.put("id/view" + i, i);
+        }
+        assertEquals(10003, index.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(Integer.valueOf(i), index.get("@+id/view" + i, 2));
+        }
+        assertEquals(Integer.valueOf(0x7f030000), index.get("layout/main"));
+    }
+}
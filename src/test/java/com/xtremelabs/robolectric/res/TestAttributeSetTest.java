@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collections;
 import java.util.HashMap;
 
 import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
@@ -52,6 +53,31 @@ public class TestAttributeSetTest {
         assertEquals(0, testAttributeSet.getAttributeResourceValue("com.some.namespace", "id", 0));
     }
 
+    @Test
+    public void shouldSeeAttributesPutAfterItHasBeenRead() throws Exception {
+        attributes.put("android:id", "@android:id/text1");
+        TestAttributeSet testAttributeSet = new TestAttributeSet(attributes, resourceExtractor, null, null, false);
+        assertThat(testAttributeSet.getAttributeValue("android", "tag"), nullValue());
+
+        testAttributeSet.put("android:tag", "a tag");
+        assertThat(testAttributeSet.getAttributeValue("android", "tag"), equalTo("a tag"));
+        assertThat(testAttributeSet.getAttributeResourceValue("android", "id", 0), equalTo(android.R.id.text1));
+    }
+
+    @Test
+    public void setsSharingSplitAttributesShouldOnlySeeTheirOwnPuts() throws Exception {
+        attributes.put("android:id", "@android:id/text1");
+        TestAttributeSet.SplitAttributes splitAttributes = new TestAttributeSet.SplitAttributes(Collections.unmodifiableMap(attributes), false);
+        TestAttributeSet first = new TestAttributeSet(splitAttributes, resourceExtractor, null, null);
+        TestAttributeSet second = new TestAttributeSet(splitAttributes, resourceExtractor, null, null);
+
+        first.put("android:tag", "a tag");
+        assertThat(first.getAttributeValue("android", "tag"), equalTo("a tag"));
+        assertThat(first.getAttributeResourceValue("android", "id", 0), equalTo(android.R.id.text1));
+        assertThat(second.getAttributeValue("android", "tag"), nullValue());
+        assertThat(second.getAttributeResourceValue("android", "id", 0), equalTo(android.R.id.text1));
+    }
+
     @Test
     public void shouldCopeWithDefiningSystemIds() throws Exception {
         attributes.put("android:id", "@+id/text1");
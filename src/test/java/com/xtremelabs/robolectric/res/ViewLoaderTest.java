@@ -165,6 +165,13 @@ public class ViewLoaderTest {
         assertThat(overrideIncludeView.findViewById(R.id.snippet_text).getVisibility(), is(View.INVISIBLE));
     }
 
+    @Test
+    public void testIncludeShouldNotChangeTheIncludedLayout() throws Exception {
+        viewLoader.inflateView(context, "layout/override_include");
+        View snippet = viewLoader.inflateView(context, "layout/snippet");
+        assertThat(snippet.getVisibility(), is(View.GONE));
+    }
+
     @Test
     public void shouldNotCountRequestFocusElementAsChild() throws Exception {
         ViewGroup viewGroup = (ViewGroup) viewLoader.inflateView(context, "layout/request_focus");
@@ -337,6 +344,38 @@ public class ViewLoaderTest {
         assertEquals(1, parentView.getChildCount());
     }
 
+    @Test
+    public void shouldInflateTheSameLayoutRepeatedly() throws Exception {
+        ViewGroup first = (ViewGroup) viewLoader.inflateView(context, "layout/media");
+        ViewGroup second = (ViewGroup) viewLoader.inflateView(context, "layout/media");
+
+        assertNotSame(first, second);
+        assertNotSame(first.findViewById(R.id.title), second.findViewById(R.id.title));
+        TestUtil.assertInstanceOf(TextView.class, second.findViewById(R.id.title));
+        assertEquals(first.getChildCount(), second.getChildCount());
+    }
+
+    @Test
+    public void shouldLoadLayoutsOnDemand() throws Exception {
+        ResourceExtractor resourceExtractor = new ResourceExtractor();
+        resourceExtractor.addLocalRClass(R.class);
+        resourceExtractor.addSystemRClass(android.R.class);
+        ViewLoader onDemandViewLoader = new ViewLoader(resourceExtractor, new AttrResourceLoader(resourceExtractor));
+        onDemandViewLoader.loadLayoutsOnDemandFrom(resourceFile("res"), getSystemResourceDir());
+
+        assertNotNull(onDemandViewLoader.getViewNode("layout/media"));
+        assertNotNull(onDemandViewLoader.getViewNode("android:layout/simple_spinner_item"));
+        assertNull(onDemandViewLoader.getViewNode("layout/does_not_exist"));
+
+        ViewGroup parentView = (ViewGroup) onDemandViewLoader.inflateView(context, "layout/included_layout_parent");
+        assertEquals(1, parentView.getChildCount());
+
+        onDemandViewLoader.setLayoutQualifierSearchPath("land");
+        ViewGroup view = (ViewGroup) onDemandViewLoader.inflateView(context, "layout/different_screen_sizes");
+        TextView textView = (TextView) view.findViewById(android.R.id.text1);
+        assertThat(textView.getText().toString(), equalTo("land"));
+    }
+
     @Test(expected=I18nException.class)
     public void shouldThrowI18nExceptionOnLayoutWithBareStrings() throws Exception {
     	viewLoader.setStrictI18n(true);
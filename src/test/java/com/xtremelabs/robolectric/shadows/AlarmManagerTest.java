@@ -6,6 +6,7 @@ import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
 import org.junit.After;
@@ -16,6 +17,7 @@ import org.junit.runner.RunWith;
 import java.util.Date;
 
 import static junit.framework.Assert.assertEquals;
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
@@ -137,6 +139,42 @@ public class AlarmManagerTest {
         assertEquals(0, shadowAlarmManager.getScheduledAlarms().size());
     }
 
+    @Test
+    public void shouldSendPendingIntentWhenTheClockReachesTheTriggerTime() {
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + 1000,
+                PendingIntent.getBroadcast(Robolectric.application, 0, new Intent("someAction"), 0));
+
+        Robolectric.getVirtualClock().advanceBy(999);
+        assertEquals(0, shadowOf(Robolectric.application).getBroadcastIntents().size());
+
+        Robolectric.getVirtualClock().advanceBy(1);
+        assertEquals(1, shadowOf(Robolectric.application).getBroadcastIntents().size());
+        assertEquals("someAction", shadowOf(Robolectric.application).getBroadcastIntents().get(0).getAction());
+        assertEquals(0, shadowAlarmManager.getScheduledAlarms().size());
+    }
+
+    @Test
+    public void shouldSendRepeatingPendingIntentEveryInterval() {
+        alarmManager.setRepeating(AlarmManager.ELAPSED_REALTIME, 1000, AlarmManager.INTERVAL_HOUR,
+                PendingIntent.getBroadcast(Robolectric.application, 0, new Intent("someAction"), 0));
+
+        Robolectric.getVirtualClock().advanceBy(3 * AlarmManager.INTERVAL_HOUR + 1000);
+        assertEquals(4, shadowOf(Robolectric.application).getBroadcastIntents().size());
+        assertEquals(4 * AlarmManager.INTERVAL_HOUR + 1000, shadowAlarmManager.peekNextScheduledAlarm().triggerAtTime);
+    }
+
+    @Test
+    public void shouldNotSendCancelledOrConsumedAlarms() {
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(Robolectric.application, 0, new Intent("someAction"), 0);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, 1000, pendingIntent);
+        alarmManager.cancel(pendingIntent);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, 1000, PendingIntent.getBroadcast(Robolectric.application, 0, new Intent("anotherAction"), 0));
+        shadowAlarmManager.getNextScheduledAlarm();
+
+        Robolectric.getVirtualClock().advanceBy(2000);
+        assertEquals(0, shadowOf(Robolectric.application).getBroadcastIntents().size());
+    }
+
     private void assertScheduledAlarm(long now, PendingIntent pendingIntent,
                                       ShadowAlarmManager.ScheduledAlarm scheduledAlarm) {
 	    assertRepeatingScheduledAlarm(now, 0L, pendingIntent, scheduledAlarm);
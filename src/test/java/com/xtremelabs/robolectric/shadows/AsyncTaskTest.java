@@ -120,6 +120,28 @@ public class AsyncTaskTest {
         assertThat(asyncTask.getStatus(), is(AsyncTask.Status.FINISHED));
     }
 
+    @Test(timeout = 10000)
+    public void shouldRunInBackgroundOnRealThreadsAndCallBackOnTheUiThreadScheduler() throws Exception {
+        Robolectric.getShadowApplication().setBackgroundThreadCount(4);
+        final Thread testThread = Thread.currentThread();
+        AsyncTask<String, String, String> asyncTask = new MyAsyncTask() {
+            @Override protected String doInBackground(String... strings) {
+                publishProgress(Thread.currentThread() == testThread ? "on the test thread" : "on a background thread");
+                return "done";
+            }
+        };
+
+        asyncTask.execute("a");
+        transcript.assertEventsSoFar("onPreExecute");
+        assertEquals("done", asyncTask.get(5, TimeUnit.SECONDS));
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertNoEventsSoFar();
+
+        Robolectric.runUiThreadTasks();
+        transcript.assertEventsSoFar("onProgressUpdate on a background thread", "onPostExecute done");
+    }
+
     private class MyAsyncTask extends AsyncTask<String, String, String> {
         @Override protected void onPreExecute() {
             transcript.add("onPreExecute");
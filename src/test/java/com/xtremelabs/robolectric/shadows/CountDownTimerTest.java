@@ -8,6 +8,7 @@ import android.os.CountDownTimer;
 
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.util.Transcript;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
@@ -74,6 +75,77 @@ public class CountDownTimerTest {
 		assertThat(shadowCountDownTimer.hasStarted(), equalTo(false));			
 	}
 	
+	@Test
+	public void shouldTickAsTheClockIsAdvanced() {
+		final Transcript transcript = new Transcript();
+		new CountDownTimer(2500, 1000) {
+			@Override
+			public void onTick(long millisUntilFinished) {
+				transcript.add("tick " + millisUntilFinished);
+			}
+
+			@Override
+			public void onFinish() {
+				transcript.add("finish");
+			}
+		}.start();
+		transcript.assertEventsSoFar("tick 2500");
+
+		Robolectric.getVirtualClock().advanceBy(1000);
+		transcript.assertEventsSoFar("tick 1500");
+
+		Robolectric.getVirtualClock().advanceBy(2000);
+		transcript.assertEventsSoFar("finish");
+	}
+
+	@Test
+	public void shouldStopTickingWhenCancelled() {
+		final Transcript transcript = new Transcript();
+		CountDownTimer timer = new CountDownTimer(2000, 1000) {
+			@Override
+			public void onTick(long millisUntilFinished) {
+				transcript.add("tick " + millisUntilFinished);
+			}
+
+			@Override
+			public void onFinish() {
+				transcript.add("finish");
+			}
+		}.start();
+		transcript.assertEventsSoFar("tick 2000");
+
+		timer.cancel();
+		Robolectric.getVirtualClock().advanceBy(3000);
+		transcript.assertNoEventsSoFar();
+	}
+
+	@Test
+	public void shouldCountDownAgainWhenRestartedAfterFinishing() {
+		final Transcript transcript = new Transcript();
+		CountDownTimer timer = new CountDownTimer(2000, 1000) {
+			@Override
+			public void onTick(long millisUntilFinished) {
+				transcript.add("tick " + millisUntilFinished);
+			}
+
+			@Override
+			public void onFinish() {
+				transcript.add("finish");
+			}
+		}.start();
+		Robolectric.getVirtualClock().advanceBy(2000);
+		transcript.assertEventsSoFar("tick 2000", "tick 1000", "finish");
+		assertThat(Robolectric.shadowOf(timer).hasStarted(), equalTo(false));
+
+		timer.start();
+		assertThat(Robolectric.shadowOf(timer).hasStarted(), equalTo(true));
+		transcript.assertEventsSoFar("tick 2000");
+
+		Robolectric.getVirtualClock().advanceBy(2000);
+		transcript.assertEventsSoFar("tick 1000", "finish");
+		assertThat(Robolectric.shadowOf(timer).hasStarted(), equalTo(false));
+	}
+
 	@Test
 	public void testAccessors() {
 		assertThat(shadowCountDownTimer.getCountDownInterval(), equalTo(countDownInterval));
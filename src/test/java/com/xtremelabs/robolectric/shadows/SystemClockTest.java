@@ -0,0 +1,71 @@
+package com.xtremelabs.robolectric.shadows;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.util.Transcript;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(WithTestDefaultsRunner.class)
+public class SystemClockTest {
+    @Test
+    public void shouldTellTimeByTheVirtualClock() throws Exception {
+        assertThat(SystemClock.uptimeMillis(), equalTo(0L));
+
+        Robolectric.getVirtualClock().advanceBy(1000);
+        assertThat(SystemClock.uptimeMillis(), equalTo(1000L));
+        assertThat(SystemClock.elapsedRealtime(), equalTo(1000L));
+        assertThat(Robolectric.getUiThreadScheduler().getCurrentTime(), equalTo(1000L));
+        assertThat(Robolectric.getBackgroundScheduler().getCurrentTime(), equalTo(1000L));
+    }
+
+    @Test
+    public void shouldStartEachTestAtTimeZero() throws Exception {
+        assertThat(SystemClock.uptimeMillis(), equalTo(0L));
+        Robolectric.getVirtualClock().advanceBy(1000);
+    }
+
+    @Test
+    public void shouldRunUiThreadBackgroundAndAlarmWorkInOrderInOnePass() throws Exception {
+        final Transcript transcript = new Transcript();
+        Robolectric.pauseMainLooper();
+        Robolectric.getBackgroundScheduler().pause();
+
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("ui at 3000");
+            }
+        }, 3000);
+        Robolectric.getBackgroundScheduler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("background at 1000");
+            }
+        }, 1000);
+        Robolectric.application.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                transcript.add("alarm at " + SystemClock.elapsedRealtime());
+            }
+        }, new IntentFilter("wakeUp"));
+        AlarmManager alarmManager = (AlarmManager) Robolectric.application.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, 2000,
+                PendingIntent.getBroadcast(Robolectric.application, 0, new Intent("wakeUp"), 0));
+
+        Robolectric.getVirtualClock().advanceBy(60 * 60 * 1000);
+        transcript.assertEventsSoFar("background at 1000", "alarm at 2000", "ui at 3000");
+    }
+}
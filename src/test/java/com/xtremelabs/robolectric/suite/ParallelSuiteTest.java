@@ -0,0 +1,294 @@
+package com.xtremelabs.robolectric.suite;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelSuiteTest {
+    private File durationsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        durationsFile = File.createTempFile("robolectric-test-durations", ".properties");
+        durationsFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        durationsFile.delete();
+    }
+
+    @Test
+    public void shouldRunTestClassesInWorkerJvmsAndReportTheirResults() throws Exception {
+        TestDurations testDurations = new TestDurations(durationsFile);
+        ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(
+                PassingTests.class.getName(), FailingTests.class.getName(), "com.example.NoSuchTest"),
+                testDurations, 2);
+
+        Result result = new JUnitCore().run(Request.runner(parallelSuite));
+
+        assertEquals(5, result.getRunCount());
+        assertEquals(1, result.getIgnoreCount());
+        assertEquals(2, result.getFailureCount());
+        for (Failure failure : result.getFailures()) {
+            if (failure.getDescription().getDisplayName().startsWith("fails(")) {
+                assertEquals(AssertionError.class, failure.getException().getClass());
+                assertEquals("failure from a worker", failure.getMessage());
+            } else {
+                assertEquals("initializationError(com.example.NoSuchTest)", failure.getDescription().getDisplayName());
+                assertEquals(ClassNotFoundException.class, failure.getException().getClass());
+            }
+        }
+
+        TestDurations savedDurations = new TestDurations(durationsFile);
+        assertTrue(savedDurations.get(PassingTests.class.getName()) >= 0);
+        assertTrue(savedDurations.get(FailingTests.class.getName()) >= 0);
+    }
+
+    @Test
+    public void shouldDescribeEachTestClassesTestsUpFront() throws Exception {
+        ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(
+                PassingTests.class.getName(), "com.example.NoSuchTest"), new TestDurations(durationsFile), 1);
+
+        List<Description> testClassDescriptions = parallelSuite.getDescription().getChildren();
+        assertEquals(2, testClassDescriptions.size());
+        assertEquals(3, testClassDescriptions.get(0).getChildren().size());
+        assertEquals(3, testClassDescriptions.get(0).testCount());
+        assertEquals("initializationError(com.example.NoSuchTest)",
+                testClassDescriptions.get(1).getChildren().get(0).getDisplayName());
+
+        // and results are reported against those same descriptions
+        final List<Description> finished = new ArrayList<Description>();
+        JUnitCore junitCore = new JUnitCore();
+        junitCore.addListener(new RunListener() {
+            @Override
+            public void testFinished(Description description) throws Exception {
+                finished.add(description);
+            }
+        });
+        junitCore.run(Request.runner(parallelSuite));
+        assertEquals(3, finished.size());
+        for (Description description : finished) {
+            assertTrue(description.getDisplayName(), containsSame(parallelSuite.getDescription(), description));
+        }
+    }
+
+    @Test
+    public void shouldReportEachTestAsSoonAsItFinishes() throws Exception {
+        final File finishedMarker = File.createTempFile("robolectric-test-finished", "");
+        finishedMarker.delete();
+        System.setProperty("robolectric.parallelSuiteTest.finishedMarker", finishedMarker.getPath());
+        try {
+            ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(WaitForTheSuiteTests.class.getName()),
+                    new TestDurations(durationsFile), 1);
+            JUnitCore junitCore = new JUnitCore();
+            junitCore.addListener(new RunListener() {
+                @Override
+                public void testFinished(Description description) throws Exception {
+                    finishedMarker.createNewFile();
+                }
+            });
+            Result result = junitCore.run(Request.runner(parallelSuite));
+            assertEquals(2, result.getRunCount());
+            assertEquals(result.getFailures().toString(), 0, result.getFailureCount());
+        } finally {
+            System.clearProperty("robolectric.parallelSuiteTest.finishedMarker");
+            finishedMarker.delete();
+        }
+    }
+
+    @Test
+    public void shouldFinishTestsAWorkerDiedInTheMiddleOf() throws Exception {
+        System.setProperty("robolectric.parallelSuiteTest.killWorker", "true");
+        try {
+            ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(
+                    KillsItsWorkerTests.class.getName(), PassingTests.class.getName()), new TestDurations(durationsFile), 1);
+            final List<Description> started = new ArrayList<Description>();
+            final List<Description> finished = new ArrayList<Description>();
+            JUnitCore junitCore = new JUnitCore();
+            junitCore.addListener(new RunListener() {
+                @Override
+                public void testStarted(Description description) throws Exception {
+                    started.add(description);
+                }
+
+                @Override
+                public void testFinished(Description description) throws Exception {
+                    finished.add(description);
+                }
+            });
+            Result result = junitCore.run(Request.runner(parallelSuite));
+
+            assertEquals(started, finished);
+            assertEquals(3, result.getRunCount());
+            assertEquals(1, result.getFailureCount());
+            Failure failure = result.getFailures().get(0);
+            assertEquals("exits(" + KillsItsWorkerTests.class.getName() + ")", failure.getDescription().getDisplayName());
+            assertEquals("worker JVM failed while running " + KillsItsWorkerTests.class.getName(), failure.getMessage());
+        } finally {
+            System.clearProperty("robolectric.parallelSuiteTest.killWorker");
+        }
+    }
+
+    private static boolean containsSame(Description tree, Description description) {
+        if (tree == description) {
+            return true;
+        }
+        for (Description child : tree.getChildren()) {
+            if (containsSame(child, description)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void shouldRunEachTestClassInAJvmOtherThanThisOne() throws Exception {
+        System.setProperty("robolectric.parallelSuiteTest.parentJvm", "true");
+        try {
+            ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(ForkedJvmTests.class.getName()),
+                    new TestDurations(durationsFile), 1);
+            Result result = new JUnitCore().run(Request.runner(parallelSuite));
+            assertEquals(1, result.getRunCount());
+            assertTrue(result.wasSuccessful());
+        } finally {
+            System.clearProperty("robolectric.parallelSuiteTest.parentJvm");
+        }
+    }
+
+    @Test
+    public void shouldLeaveBuildingTestClassesOwnRunnersToTheWorkers() throws Exception {
+        RecordingRunner.instances = 0;
+        ParallelSuite parallelSuite = new ParallelSuite("suite", Arrays.asList(
+                RunsWithItsOwnRunnerTests.class.getName()), new TestDurations(durationsFile), 1);
+
+        Description testClassDescription = parallelSuite.getDescription().getChildren().get(0);
+        assertEquals(RunsWithItsOwnRunnerTests.class.getName(), testClassDescription.getDisplayName());
+        assertEquals(1, testClassDescription.testCount());
+        assertEquals(0, RecordingRunner.instances);
+
+        Result result = new JUnitCore().run(Request.runner(parallelSuite));
+        assertEquals(1, result.getRunCount());
+        assertEquals(0, result.getFailureCount());
+        assertEquals(0, RecordingRunner.instances);
+    }
+
+    public static class RecordingRunner extends BlockJUnit4ClassRunner {
+        static int instances;
+
+        public RecordingRunner(Class<?> testClass) throws InitializationError {
+            super(testClass);
+            instances++;
+        }
+    }
+
+    @RunWith(RecordingRunner.class)
+    public static class RunsWithItsOwnRunnerTests {
+        @Test
+        public void passes() throws Exception {
+        }
+    }
+
+    public static class PassingTests {
+        @Test
+        public void passes() throws Exception {
+        }
+
+        @Test
+        public void alsoPasses() throws Exception {
+        }
+
+        @Ignore @Test
+        public void isIgnored() throws Exception {
+        }
+    }
+
+    public static class FailingTests {
+        @Test
+        public void passes() throws Exception {
+        }
+
+        @Test
+        public void fails() throws Exception {
+            throw new AssertionError("failure from a worker");
+        }
+    }
+
+    public static class WaitForTheSuiteTests {
+        private static boolean oneHasRun;
+
+        @Test
+        public void one() throws Exception {
+            waitForTheOther();
+        }
+
+        @Test
+        public void other() throws Exception {
+            waitForTheOther();
+        }
+
+        // whichever runs second only passes once the suite has heard that the first finished
+        private void waitForTheOther() throws Exception {
+            if (!oneHasRun) {
+                oneHasRun = true;
+                return;
+            }
+            File finishedMarker = new File(System.getProperty("robolectric.parallelSuiteTest.finishedMarker"));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!finishedMarker.exists()) {
+                assertTrue("the first test wasn't reported until its class finished", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    public static class KillsItsWorkerTests {
+        @Test
+        public void exits() throws Exception {
+            // only ever set while the suite runs this in a worker
+            if (Boolean.getBoolean("robolectric.parallelSuiteTest.killWorker")) {
+                System.exit(1);
+            }
+        }
+    }
+
+    public static class ForkedJvmTests {
+        @Test
+        public void shouldBeInAWorkerWithTheParentsRobolectricProperties() throws Exception {
+            assertEquals("true", System.getProperty("robolectric.parallelSuiteTest.parentJvm"));
+            assertEquals(SuiteWorker.class.getName(), findMainClass());
+        }
+
+        private String findMainClass() {
+            StackTraceElement[] mainStack = Thread.getAllStackTraces().get(mainThread());
+            return mainStack[mainStack.length - 1].getClassName();
+        }
+
+        private Thread mainThread() {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if ("main".equals(thread.getName())) {
+                    return thread;
+                }
+            }
+            throw new RuntimeException("no main thread");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.xtremelabs.robolectric.suite;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDurationsTest {
+    private File durationsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        durationsFile = File.createTempFile("robolectric-test-durations", ".properties");
+        durationsFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        durationsFile.delete();
+    }
+
+    @Test
+    public void shouldRememberDurationsBetweenRuns() throws Exception {
+        TestDurations testDurations = new TestDurations(durationsFile);
+        assertEquals(TestDurations.UNKNOWN, testDurations.get("com.example.FooTest"));
+        testDurations.record("com.example.FooTest", 1234);
+        testDurations.save();
+
+        assertEquals(1234, new TestDurations(durationsFile).get("com.example.FooTest"));
+    }
+
+    @Test
+    public void shouldOrderSlowestFirstWithUntimedClassesAheadOfEverything() throws Exception {
+        TestDurations testDurations = new TestDurations(durationsFile);
+        testDurations.record("Fast", 10);
+        testDurations.record("Slow", 5000);
+        testDurations.record("Medium", 300);
+
+        assertEquals(Arrays.asList("New", "Slow", "Medium", "Fast"),
+                testDurations.slowestFirst(Arrays.asList("Fast", "New", "Slow", "Medium")));
+    }
+}
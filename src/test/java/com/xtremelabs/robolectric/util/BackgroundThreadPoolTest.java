@@ -0,0 +1,103 @@
+package com.xtremelabs.robolectric.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BackgroundThreadPoolTest {
+    @Test(timeout = 10000)
+    public void shouldRunWorkOnSeveralThreadsAtOnce() throws Exception {
+        BackgroundThreadPool pool = new BackgroundThreadPool(4);
+        final CountDownLatch allStarted = new CountDownLatch(4);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        for (int i = 0; i < 4; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    threads.add(Thread.currentThread());
+                    allStarted.countDown();
+                    try {
+                        // only returns if the others are running alongside
+                        assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        pool.waitUntilIdle();
+        assertThat(threads.size(), equalTo(4));
+        assertThat(threads.contains(Thread.currentThread()), equalTo(false));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldWaitForWorkHandedOnByOtherWork() throws Exception {
+        final BackgroundThreadPool pool = new BackgroundThreadPool(2);
+        final AtomicInteger runCount = new AtomicInteger();
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            runCount.incrementAndGet();
+                        }
+                    });
+                }
+            }
+        });
+
+        pool.waitUntilIdle();
+        assertThat(runCount.get(), equalTo(100));
+        assertTrue(pool.isIdle());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldThrowFailuresOnTheWaitingThread() throws Exception {
+        BackgroundThreadPool pool = new BackgroundThreadPool(2);
+        final RuntimeException failure = new RuntimeException("in the background");
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw failure;
+            }
+        });
+
+        try {
+            pool.waitUntilIdle();
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, not(equalTo(failure)));
+            assertThat(e.getCause(), equalTo((Throwable) failure));
+        }
+
+        // each failure is only reported once
+        pool.waitUntilIdle();
+    }
+
+    @Test
+    public void shouldOnlyUseThreadsWhenAskedTo() throws Exception {
+        System.clearProperty(BackgroundThreadPool.THREADS_PROPERTY);
+        assertThat(BackgroundThreadPool.fromSystemProperties() == null, equalTo(true));
+
+        System.setProperty(BackgroundThreadPool.THREADS_PROPERTY, "3");
+        try {
+            assertThat(BackgroundThreadPool.fromSystemProperties().getThreadCount(), equalTo(3));
+        } finally {
+            System.clearProperty(BackgroundThreadPool.THREADS_PROPERTY);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.xtremelabs.robolectric.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
@@ -149,6 +151,145 @@ public class SchedulerTest {
         assertThat(runnable2.wasRun, equalTo(true));
     }
 
+    @Test
+    public void shouldRunRunnablesDueAtTheSameTimeInTheOrderTheyWerePosted() throws Exception {
+        scheduler.postDelayed(new AddToTranscript("one"), 100);
+        scheduler.postDelayed(new AddToTranscript("two"), 50);
+        scheduler.postDelayed(new AddToTranscript("three"), 100);
+        scheduler.postDelayed(new AddToTranscript("four"), 50);
+        scheduler.postAtFrontOfQueue(new AddToTranscript("five"));
+        scheduler.postAtFrontOfQueue(new AddToTranscript("six"));
+
+        scheduler.advanceBy(100);
+        transcript.assertEventsSoFar("six", "five", "two", "four", "one", "three");
+    }
+
+    @Test
+    public void removeShouldNotLeaveCancelledRunnablesBehind() throws Exception {
+        TestRunnable kept = new TestRunnable();
+        scheduler.postDelayed(kept, 10);
+        for (int i = 0; i < 1000; i++) {
+            TestRunnable runnable = new TestRunnable();
+            scheduler.postDelayed(runnable, 5);
+            scheduler.remove(runnable);
+        }
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(1));
+
+        assertThat(scheduler.advanceToNextPostedRunnable(), equalTo(true));
+        assertThat(scheduler.getCurrentTime(), equalTo(10L));
+        assertThat(kept.wasRun, equalTo(true));
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(0));
+    }
+
+    @Test
+    public void shouldOrderRunnablesPostedFarApartInTime() throws Exception {
+        long threeWeeks = 3L * 7 * 24 * 60 * 60 * 1000;
+        scheduler.postDelayed(new AddToTranscript("never"), Long.MAX_VALUE);
+        scheduler.postDelayed(new AddToTranscript("three weeks"), threeWeeks);
+        scheduler.postDelayed(new AddToTranscript("one second"), 1000);
+
+        scheduler.advanceBy(threeWeeks);
+        transcript.assertEventsSoFar("one second", "three weeks");
+        assertThat(scheduler.getCurrentTime(), equalTo(threeWeeks));
+
+        scheduler.postDelayed(new AddToTranscript("also never"), Long.MAX_VALUE);
+        scheduler.advanceBy(Long.MAX_VALUE);
+        transcript.assertEventsSoFar("never", "also never");
+        assertThat(scheduler.getCurrentTime(), equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void advanceToShouldNotGoBackInTime() throws Exception {
+        scheduler.postDelayed(new AddToTranscript("one"), 1000);
+        scheduler.advanceTo(500);
+        assertThat(scheduler.advanceTo(100), equalTo(false));
+        assertThat(scheduler.advanceBy(Long.MIN_VALUE), equalTo(false));
+        assertThat(scheduler.getCurrentTime(), equalTo(500L));
+
+        assertThat(scheduler.advanceTo(1000), equalTo(true));
+        transcript.assertEventsSoFar("one");
+    }
+
+    @Test
+    public void shouldTreatNegativeDelaysAsNoDelay() throws Exception {
+        scheduler.advanceTo(0);
+        scheduler.postDelayed(new AddToTranscript("one"), 0);
+        scheduler.postDelayed(new AddToTranscript("two"), -1000);
+        scheduler.advanceBy(0);
+        transcript.assertEventsSoFar("one", "two");
+    }
+
+    @Test(timeout = 10000)
+    public void shouldTakePostsFromOtherThreadsWhileARunnableWaitsForThem() throws Exception {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                Thread poster = new Thread() {
+                    @Override
+                    public void run() {
+                        scheduler.post(new AddToTranscript("from another thread"));
+                        scheduler.postAtFrontOfQueue(new AddToTranscript("at the front from another thread"));
+                    }
+                };
+                poster.start();
+                try {
+                    poster.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                transcript.add("joined");
+            }
+        });
+
+        scheduler.advanceBy(0);
+        transcript.assertEventsSoFar("joined", "at the front from another thread", "from another thread");
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(0));
+    }
+
+    @Test
+    public void shouldQueuePostsFromOtherThreadsEvenWhenUnpaused() throws Exception {
+        scheduler.unPause();
+        Thread poster = new Thread() {
+            @Override
+            public void run() {
+                scheduler.postDelayed(new AddToTranscript("one"), 100);
+                scheduler.post(new AddToTranscript("two"));
+            }
+        };
+        poster.start();
+        poster.join();
+        transcript.assertNoEventsSoFar();
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(2));
+
+        scheduler.advanceBy(100);
+        transcript.assertEventsSoFar("two", "one");
+    }
+
+    @Test(timeout = 10000)
+    public void shouldPostAndDrainManyRunnablesQuickly() throws Exception {
+        final int count = 100000;
+        final long[] lastTime = {-1};
+        final int[] runCount = {0};
+        Random random = new Random(1234);
+        for (int i = 0; i < count; i++) {
+            final long delay = random.nextInt(10000);
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    assertThat(scheduler.getCurrentTime() >= lastTime[0], equalTo(true));
+                    assertThat(scheduler.getCurrentTime(), equalTo(delay));
+                    lastTime[0] = scheduler.getCurrentTime();
+                    runCount[0]++;
+                }
+            }, delay);
+        }
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(count));
+
+        scheduler.advanceToLastPostedRunnable();
+        assertThat(runCount[0], equalTo(count));
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(0));
+    }
+
     private class AddToTranscript implements Runnable {
         private String event;
 
@@ -0,0 +1,111 @@
+package com.xtremelabs.robolectric.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class VirtualClockTest {
+    private Transcript transcript;
+    private VirtualClock clock;
+    private Scheduler uiScheduler;
+    private Scheduler backgroundScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        transcript = new Transcript();
+        clock = new VirtualClock();
+        uiScheduler = new Scheduler(clock);
+        uiScheduler.pause();
+        backgroundScheduler = new Scheduler(clock);
+        backgroundScheduler.pause();
+    }
+
+    @Test
+    public void shouldRunEverySchedulersRunnablesInGlobalOrder() throws Exception {
+        uiScheduler.postDelayed(new AddToTranscript("ui at 3000"), 3000);
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 1000"), 1000);
+        uiScheduler.postDelayed(new AddToTranscript("ui at 1000"), 1000);
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 2000"), 2000);
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 5000"), 5000);
+
+        assertThat(clock.advanceBy(4000), equalTo(true));
+        transcript.assertEventsSoFar("background at 1000", "ui at 1000", "background at 2000", "ui at 3000");
+        assertThat(clock.getCurrentTime(), equalTo(4000L));
+        assertThat(uiScheduler.getCurrentTime(), equalTo(4000L));
+        assertThat(backgroundScheduler.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldRunWhatRunnablesPostToOtherSchedulersWhenItIsDue() throws Exception {
+        backgroundScheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("background at 1000");
+                uiScheduler.postDelayed(new AddToTranscript("ui at 1500"), 500);
+            }
+        }, 1000);
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 2000"), 2000);
+
+        clock.advanceBy(3000);
+        transcript.assertEventsSoFar("background at 1000", "ui at 1500", "background at 2000");
+    }
+
+    @Test
+    public void advancingOneSchedulerShouldMoveTheTimeForAll() throws Exception {
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 1000"), 1000);
+
+        uiScheduler.advanceBy(2000);
+        transcript.assertNoEventsSoFar();
+        assertThat(backgroundScheduler.getCurrentTime(), equalTo(2000L));
+
+        backgroundScheduler.advanceBy(0);
+        transcript.assertEventsSoFar("background at 1000");
+        assertThat(clock.getCurrentTime(), equalTo(2000L));
+    }
+
+    @Test
+    public void shouldNotGoBackInTimeToRunOverdueRunnables() throws Exception {
+        backgroundScheduler.postDelayed(new AddToTranscript("background at 1000"), 1000);
+        uiScheduler.advanceBy(2000);
+
+        backgroundScheduler.runOneTask();
+        transcript.assertEventsSoFar("background at 1000");
+        assertThat(clock.getCurrentTime(), equalTo(2000L));
+    }
+
+    @Test
+    public void shouldForgetSchedulersUntilTheyPostAgainAfterAReset() throws Exception {
+        uiScheduler.postDelayed(new AddToTranscript("ui before reset"), 1000);
+        clock.reset();
+        assertThat(clock.getCurrentTime(), equalTo(0L));
+
+        clock.advanceBy(2000);
+        transcript.assertNoEventsSoFar();
+
+        backgroundScheduler.postDelayed(new AddToTranscript("background after reset"), 1000);
+        clock.advanceBy(1000);
+        transcript.assertEventsSoFar("background after reset");
+    }
+
+    @Test
+    public void shouldKeepWallClockTimeInStepWithVirtualTime() throws Exception {
+        long startingWallClockTime = clock.currentTimeMillis();
+        clock.advanceBy(60 * 60 * 1000);
+        assertThat(clock.currentTimeMillis() - startingWallClockTime, equalTo(60 * 60 * 1000L));
+    }
+
+    private class AddToTranscript implements Runnable {
+        private String event;
+
+        public AddToTranscript(String event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            transcript.add(event);
+        }
+    }
+}